@@ -0,0 +1,71 @@
+package com.nerdery.imagechallenge.benchmarks;
+
+import com.nerdery.imagechallenge.services.CompositeService;
+import com.nerdery.imagechallenge.services.filters.FilterResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times {@link CompositeService#buildComposite(BufferedImage, FilterResult)}, which every composite response pays for
+ * on top of the filter itself, against drawing into a recycled buffer with
+ * {@link CompositeService#leaseComposite(BufferedImage, FilterResult)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CompositeBenchmark {
+
+    @Param({"640x480", "1920x1080", "3840x2160", "7680x4320"})
+    public String size;
+
+    @Param({"TYPE_3BYTE_BGR", "TYPE_INT_ARGB"})
+    public String imageType;
+
+    private CompositeService compositeService;
+    private BufferedImage sourceImage;
+    private FilterResult filterResult;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        compositeService = new CompositeService();
+        compositeService.setSeparatorColorHex("0xFF0000");
+        compositeService.setTextColorHex("0xEEEEEE");
+        compositeService.setFontName("Verdana");
+        compositeService.setFontSize(24);
+        compositeService.setMaxIdlePerShape(1);
+        compositeService.setMaxIdleBytes(256L * 1024 * 1024);
+        compositeService.configure();
+
+        sourceImage = SyntheticImages.create(size, imageType);
+        filterResult = new FilterResult(TimeUnit.MILLISECONDS.toNanos(42), SyntheticImages.create(size, imageType));
+    }
+
+    @Benchmark
+    public BufferedImage buildComposite() {
+        return compositeService.buildComposite(sourceImage, filterResult);
+    }
+
+    @Benchmark
+    public int leaseComposite() {
+        BufferedImage composite = compositeService.leaseComposite(sourceImage, filterResult);
+        int pixel = composite.getRGB(0, 0);
+        compositeService.releaseComposite(composite);
+        return pixel;
+    }
+}
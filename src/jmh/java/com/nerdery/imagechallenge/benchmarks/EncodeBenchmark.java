@@ -0,0 +1,67 @@
+package com.nerdery.imagechallenge.benchmarks;
+
+import com.nerdery.imagechallenge.services.EncodeOptions;
+import com.nerdery.imagechallenge.services.FilterMetrics;
+import com.nerdery.imagechallenge.services.ImageEncoder;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the <code>ImageIO</code> encode step for each supported response format, both through
+ * {@link ImageIO#write} and through the pooled {@link ImageEncoder}. Output goes to a null stream so only the encoder
+ * itself is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EncodeBenchmark {
+
+    @Param({"jpeg", "png", "gif"})
+    public String format;
+
+    @Param({"640x480", "1920x1080", "3840x2160", "7680x4320"})
+    public String size;
+
+    @Param({"TYPE_3BYTE_BGR", "TYPE_INT_ARGB"})
+    public String imageType;
+
+    private BufferedImage image;
+    private ImageEncoder imageEncoder;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        image = SyntheticImages.create(size, imageType);
+        imageEncoder = new ImageEncoder();
+        imageEncoder.setMaxIdlePerFormat(1);
+        imageEncoder.setFilterMetrics(new FilterMetrics());
+    }
+
+    @Benchmark
+    public boolean encode() throws IOException {
+        return ImageIO.write(image, format, new NullOutputStream());
+    }
+
+    @Benchmark
+    public void encodePooled() throws IOException {
+        imageEncoder.encode(image, format, EncodeOptions.DEFAULT, new NullOutputStream());
+    }
+}
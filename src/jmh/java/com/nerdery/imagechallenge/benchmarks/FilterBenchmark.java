@@ -0,0 +1,66 @@
+package com.nerdery.imagechallenge.benchmarks;
+
+import com.nerdery.imagechallenge.services.filters.ImageFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times {@link ImageFilter#transform(BufferedImage)} for every filter bean across image sizes and types.<p/>
+ *
+ * The full matrix takes a very long time (the slow filters at 8K in particular), so narrow it down with
+ * <code>-p</code>, and use <code>-t</code> to see how a filter behaves with several concurrent requests:
+ * <pre>./gradlew jmh -PjmhArgs='FilterBenchmark -p filterName=GottaGoFast,SlidingOilPaint -p size=1920x1080 -t 4'</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FilterBenchmark {
+
+    @Param({"ColorInvert", "ColorRotate", "Sepia", "OldTimeyEffect", "GottaGoFast", "SlidingOilPaint", "OilPaint",
+            "revans-FasterOilPaintFilter", "Ripple", "Blur", "Sharpen", "genetic"})
+    public String filterName;
+
+    @Param({"640x480", "1920x1080", "3840x2160", "7680x4320"})
+    public String size;
+
+    @Param({"TYPE_3BYTE_BGR", "TYPE_INT_ARGB"})
+    public String imageType;
+
+    private FilterContext context;
+    private ImageFilter filter;
+    private BufferedImage sourceImage;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = new FilterContext();
+        filter = context.getFilter(filterName);
+        sourceImage = SyntheticImages.create(size, imageType);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public BufferedImage transform() {
+        return filter.transform(sourceImage);
+    }
+}
@@ -0,0 +1,40 @@
+package com.nerdery.imagechallenge.benchmarks;
+
+import com.nerdery.imagechallenge.services.FilterService;
+import com.nerdery.imagechallenge.services.filters.ImageFilter;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.io.support.ResourcePropertySource;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Starts just enough of the application to get every {@link ImageFilter} bean wired the way it is in production,
+ * using the regular <code>application.properties</code>.
+ */
+public final class FilterContext implements AutoCloseable {
+    private static final String FILTER_PACKAGE = "com.nerdery.imagechallenge.services.filters";
+
+    private final AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+
+    public FilterContext() throws IOException {
+        context.getEnvironment().getPropertySources().addFirst(new ResourcePropertySource("classpath:application.properties"));
+        context.scan(FILTER_PACKAGE);
+        // the genetic filter picks its targets from the filter service
+        context.register(FilterService.class);
+        context.refresh();
+    }
+
+    public ImageFilter getFilter(String name) {
+        Map<String, ImageFilter> filters = context.getBeansOfType(ImageFilter.class);
+        return filters.values().stream()
+                .filter(filter -> filter.getName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("No filter named " + name));
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
@@ -0,0 +1,164 @@
+package com.nerdery.imagechallenge.benchmarks;
+
+import com.nerdery.imagechallenge.genetic.Colors;
+import com.nerdery.imagechallenge.genetic.Population;
+import com.nerdery.imagechallenge.services.filters.PixelBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generations per second of the genetic engine against the engine it replaced: one candidate at a time, every
+ * candidate rescored from scratch each generation, and a mutation roll for every pixel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class GeneticBenchmark {
+
+    @Param({"1920x1080"})
+    public String size;
+
+    @Param({"50"})
+    public int populationSize;
+
+    private Population population;
+    private BaselinePopulation baseline;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BufferedImage sourceImage = SyntheticImages.create(size, "TYPE_INT_ARGB");
+        int[] start = PixelBuffer.normalize(sourceImage).getInts();
+        int[] reference = new int[start.length];
+        for (int i = 0; i < start.length; i++) {
+            reference[i] = start[i] ^ 0x00ffffff;
+        }
+
+        population = new Population(populationSize, 42L);
+        population.resetPopulation(start, reference);
+        baseline = new BaselinePopulation(populationSize, start, reference, 42L);
+    }
+
+    @Benchmark
+    public Population incrementalScores() {
+        population.generation();
+        return population;
+    }
+
+    @Benchmark
+    public BaselinePopulation baseline() {
+        baseline.generation();
+        return baseline;
+    }
+
+    /**
+     * The engine as it was before the genetic work: tournament winners bred as they are, with no copies, every
+     * candidate rescored from scratch before each generation, and a mutation roll for every pixel, all on one thread.
+     * It draws from a {@link SplittableRandom} rather than the <code>SecureRandom</code> it used, which on its own made
+     * it orders of magnitude slower and would drown out everything else.
+     */
+    public static class BaselinePopulation {
+        private static final int TOURNAMENT_SIZE = 4;
+        private static final double CROSSOVER_RATE = 0.7;
+        private static final double MUTATION_RATE = 0.01;
+
+        private final SplittableRandom random;
+        private final int[] reference;
+        private int[][] data;
+        private int[][] scores;
+        private long[] totalScores;
+
+        BaselinePopulation(int size, int[] start, int[] reference, long seed) {
+            this.random = new SplittableRandom(seed);
+            this.reference = reference;
+            data = new int[size][];
+            scores = new int[size][];
+            totalScores = new long[size];
+            for (int c = 0; c < size; c++) {
+                data[c] = new int[start.length];
+                scores[c] = new int[start.length];
+                for (int i = 0; i < start.length; i++) {
+                    data[c][i] = Colors.jitterPixelColors(start[i], random);
+                }
+            }
+        }
+
+        void generation() {
+            for (int c = 0; c < data.length; c++) {
+                long total = 0;
+                for (int i = 0; i < reference.length; i++) {
+                    scores[c][i] = score(data[c][i], reference[i]);
+                    total += scores[c][i];
+                }
+                totalScores[c] = total;
+            }
+
+            int[][] nextData = new int[data.length][];
+            int[][] nextScores = new int[data.length][];
+            for (int pair = 0; pair < data.length / 2; pair++) {
+                int c1 = tournament();
+                int c2 = tournament();
+                if (random.nextDouble() > CROSSOVER_RATE) {
+                    for (int i = random.nextInt(reference.length); i < reference.length; i++) {
+                        int value = data[c1][i];
+                        data[c1][i] = data[c2][i];
+                        data[c2][i] = value;
+                    }
+                }
+                mutate(c1);
+                mutate(c2);
+                nextData[2 * pair] = data[c1];
+                nextScores[2 * pair] = scores[c1];
+                nextData[2 * pair + 1] = data[c2];
+                nextScores[2 * pair + 1] = scores[c2];
+            }
+            if (data.length % 2 != 0) {
+                nextData[data.length - 1] = data[data.length - 1];
+                nextScores[data.length - 1] = scores[data.length - 1];
+            }
+            data = nextData;
+            scores = nextScores;
+        }
+
+        private int tournament() {
+            int best = random.nextInt(data.length);
+            for (int i = 1; i < TOURNAMENT_SIZE; i++) {
+                int current = random.nextInt(data.length);
+                if (totalScores[current] < totalScores[best]) {
+                    best = current;
+                }
+            }
+            return best;
+        }
+
+        private void mutate(int candidate) {
+            for (int i = 0; i < reference.length; i++) {
+                if (scores[candidate][i] > 0 && random.nextDouble() < MUTATION_RATE) {
+                    data[candidate][i] = Colors.jitterPixelColors(data[candidate][i], random);
+                }
+            }
+        }
+
+        private static int score(int pixel, int reference) {
+            return Math.abs(Colors.red(reference) - Colors.red(pixel))
+                    + Math.abs(Colors.green(reference) - Colors.green(pixel))
+                    + Math.abs(Colors.blue(reference) - Colors.blue(pixel));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.nerdery.imagechallenge.benchmarks;
+
+import com.nerdery.imagechallenge.services.filters.ColorInvertFilter;
+import com.nerdery.imagechallenge.services.filters.PixelBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.stream.IntStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a point filter written against {@link BufferedImage#getRGB(int, int)} / {@link BufferedImage#setRGB} with
+ * the same filter written against {@link PixelBuffer}, including the cost of normalizing the source.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PixelBufferBenchmark {
+
+    @Param({"640x480", "1920x1080", "3840x2160", "7680x4320"})
+    public String size;
+
+    @Param({"TYPE_3BYTE_BGR", "TYPE_INT_ARGB"})
+    public String imageType;
+
+    private BufferedImage sourceImage;
+    private ColorInvertFilter filter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sourceImage = SyntheticImages.create(size, imageType);
+        filter = new ColorInvertFilter();
+    }
+
+    @Benchmark
+    public BufferedImage getRgbSetRgb() {
+        int sourceWidth = sourceImage.getWidth();
+        int sourceHeight = sourceImage.getHeight();
+        BufferedImage targetImage = new BufferedImage(sourceWidth, sourceHeight, sourceImage.getType());
+        IntStream.range(0, sourceHeight).parallel().forEach(y -> IntStream.range(0, sourceWidth).forEach(x -> {
+            int pixel = sourceImage.getRGB(x, y);
+            int invertedPixel = (0x00ffffff - (pixel | 0xff000000)) | (pixel & 0xff000000);
+            targetImage.setRGB(x, y, invertedPixel);
+        }));
+        return targetImage;
+    }
+
+    @Benchmark
+    public BufferedImage pixelBuffer() {
+        PixelBuffer source = PixelBuffer.normalize(sourceImage);
+        PixelBuffer target = source.createCompatible();
+        filter.transform(source, target);
+        return target.getImage();
+    }
+}
@@ -0,0 +1,50 @@
+package com.nerdery.imagechallenge.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.lang.reflect.Field;
+import java.util.Random;
+
+/**
+ * Generates benchmark inputs locally so runs don't depend on the network or on the configured source image. The
+ * images mix smooth gradients with noise, which gives the filters and encoders something photo-like to chew on.
+ */
+public final class SyntheticImages {
+    private static final long SEED = 0x5EED;
+
+    private SyntheticImages() {}
+
+    /**
+     * @param size The image size as <code>WIDTHxHEIGHT</code>, e.g. <code>1920x1080</code>.
+     * @param imageType The name of a {@link BufferedImage} type constant, e.g. <code>TYPE_3BYTE_BGR</code>.
+     */
+    public static BufferedImage create(String size, String imageType) {
+        String[] dimensions = size.toLowerCase().split("x");
+        return create(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]), imageType(imageType));
+    }
+
+    public static BufferedImage create(int width, int height, int imageType) {
+        BufferedImage image = new BufferedImage(width, height, imageType);
+        Random random = new Random(SEED);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int red = (x * 255) / width;
+                int green = (y * 255) / height;
+                int blue = ((x / 16 + y / 16) % 2) * 128 + random.nextInt(64);
+                int alpha = 0xFF - random.nextInt(16);
+                row[x] = (alpha << 24) | (red << 16) | (green << 8) | blue;
+            }
+            image.setRGB(0, y, width, 1, row, 0, width);
+        }
+        return image;
+    }
+
+    public static int imageType(String name) {
+        try {
+            Field field = BufferedImage.class.getField(name);
+            return field.getInt(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Unknown image type " + name, e);
+        }
+    }
+}
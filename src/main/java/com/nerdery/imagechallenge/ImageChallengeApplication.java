@@ -3,11 +3,13 @@ package com.nerdery.imagechallenge;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.web.WebMvcAutoConfiguration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * @author Josh Klun (jklun@nerdery.com)
  */
 @SpringBootApplication
+@EnableScheduling
 public class ImageChallengeApplication extends WebMvcAutoConfiguration {
 
     public static void main(String[] args) {
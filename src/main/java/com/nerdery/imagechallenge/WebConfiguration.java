@@ -0,0 +1,47 @@
+package com.nerdery.imagechallenge;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+import javax.inject.Inject;
+
+/**
+ * Writes streamed responses - tiled images and animations - on a bounded pool. Left to itself Spring MVC starts a
+ * new thread for every streamed response; with a pool, a burst of them queues up, and once the queue is full is turned
+ * away with a 503 like a burst of filter work.
+ */
+@Configuration
+public class WebConfiguration extends WebMvcConfigurerAdapter {
+    private int threads;
+    private int queueCapacity;
+
+    @Bean
+    public AsyncTaskExecutor responseExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("response-");
+        return executor;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(responseExecutor());
+    }
+
+    @Inject
+    public void setThreads(@Value("${imagechallenge.response.threads}") int threads) {
+        this.threads = threads;
+    }
+
+    @Inject
+    public void setQueueCapacity(@Value("${imagechallenge.response.queue}") int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+}
@@ -2,29 +2,75 @@ package com.nerdery.imagechallenge.controllers;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.nerdery.imagechallenge.services.AnimationService;
 import com.nerdery.imagechallenge.services.CompositeService;
+import com.nerdery.imagechallenge.services.EncodeOptions;
+import com.nerdery.imagechallenge.services.EncodedImage;
+import com.nerdery.imagechallenge.services.FilterExecutor;
+import com.nerdery.imagechallenge.services.FilterMetrics;
+import com.nerdery.imagechallenge.services.FilterPipeline;
 import com.nerdery.imagechallenge.services.FilterService;
+import com.nerdery.imagechallenge.services.ImageEncoder;
+import com.nerdery.imagechallenge.services.ImageSource;
+import com.nerdery.imagechallenge.services.ImageTooLargeException;
+import com.nerdery.imagechallenge.services.InFlightRequests;
+import com.nerdery.imagechallenge.services.ResultCache;
+import com.nerdery.imagechallenge.services.ResultKey;
+import com.nerdery.imagechallenge.services.SourceImage;
+import com.nerdery.imagechallenge.services.SourceImageService;
+import com.nerdery.imagechallenge.services.TiledFilterService;
+import com.nerdery.imagechallenge.services.UploadService;
+import com.nerdery.imagechallenge.genetic.Candidate;
+import com.nerdery.imagechallenge.genetic.EvolutionResult;
+import com.nerdery.imagechallenge.genetic.IslandOptions;
+import com.nerdery.imagechallenge.genetic.StoppingCriteria;
+import com.nerdery.imagechallenge.services.filters.FilterParameters;
 import com.nerdery.imagechallenge.services.filters.FilterResult;
-import org.springframework.beans.factory.annotation.Value;
+import com.nerdery.imagechallenge.services.filters.GeneticFilter;
+import com.nerdery.imagechallenge.services.filters.ImageFilter;
+import com.nerdery.imagechallenge.services.filters.RippleFilter;
+import com.nerdery.imagechallenge.services.filters.StageTime;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import static org.springframework.http.MediaType.*;
+import static java.util.concurrent.CompletableFuture.completedFuture;
 
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RequestPart;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import javax.imageio.ImageIO;
 import javax.inject.Inject;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
-import java.net.URL;
+import java.util.List;
+import java.util.Base64;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author Josh Klun (jklun@nerdery.com)
@@ -32,6 +78,11 @@ import java.util.Optional;
 @Controller
 public class FilterController {
 
+    private static final String SERVER_TIMING = "Server-Timing";
+    private static final int MAX_PREVIEW_WIDTH = 640;
+    private static final int MAX_ANIMATION_FRAMES = 120;
+    private static final int TILED_PIPE_BYTES = 256 * 1024;
+    private static final long EVOLVE_GRACE_MILLIS = 60 * 1000;
     private static final String DEFAULT_FILE_FORMAT = IMAGE_JPEG.getSubtype();
     private static final Map<String, MediaType> SUPPORTED_FILE_FORMATS = new ImmutableMap.Builder<String, MediaType>()
             .put(IMAGE_JPEG.getSubtype(), IMAGE_JPEG)
@@ -41,45 +92,595 @@ public class FilterController {
 
     private CompositeService compositeService;
     private FilterService filterService;
-    private String sourceUrl;
+    private SourceImageService sourceImageService;
+    private ResultCache resultCache;
+    private TiledFilterService tiledFilterService;
+    private FilterExecutor filterExecutor;
+    private InFlightRequests inFlightRequests;
+    private FilterMetrics filterMetrics;
+    private ImageEncoder imageEncoder;
+    private GeneticFilter geneticFilter;
+    private AnimationService animationService;
+    private UploadService uploadService;
+    private RippleFilter rippleFilter;
 
     @RequestMapping("/filter/{name}")
-    public ResponseEntity<byte[]> getTransformedImage(@PathVariable("name") String filterName) throws IOException, URISyntaxException {
-        return buildResponseEntity(filterName, DEFAULT_FILE_FORMAT);
+    public CompletableFuture<ResponseEntity<byte[]>> getTransformedImage(@PathVariable("name") String filterName,
+            @RequestParam(value = "quality", required = false) Integer quality,
+            @RequestParam(value = "composite", defaultValue = "true") boolean composite,
+            @RequestParam Map<String, String> requestParameters) throws IOException, URISyntaxException {
+        return buildResponseEntity(filterName, DEFAULT_FILE_FORMAT, quality, null, composite, requestParameters,
+                new SourceImageLoader());
     }
 
-    @RequestMapping("/filter/{name}/{format}")
-    public ResponseEntity<byte[]> getTransformedImage(@PathVariable("name") String filterName, @PathVariable("format") String fileFormat)
-            throws IOException, URISyntaxException {
+    /**
+     * @param quality JPEG quality from 1 to 100.
+     * @param compression PNG compression level from 0 to 9, where the server's PNG encoder supports one.
+     * @param composite Whether to return the source and filtered images with the timings drawn on, or only the
+     *                  filtered image. The timings are sent in a <code>Server-Timing</code> header either way.
+     * @param requestParameters All the request parameters, of which the ones the filters accept tune them, e.g.
+     *                          <code>?radius=10&amp;levels=12</code> for the oil paint filters.
+     */
+    @RequestMapping(value = "/filter/{name}/{format}", method = RequestMethod.GET)
+    public CompletableFuture<ResponseEntity<byte[]>> getTransformedImage(@PathVariable("name") String filterName,
+            @PathVariable("format") String fileFormat, @RequestParam(value = "quality", required = false) Integer quality,
+            @RequestParam(value = "compression", required = false) Integer compression,
+            @RequestParam(value = "composite", defaultValue = "true") boolean composite,
+            @RequestParam Map<String, String> requestParameters) throws IOException, URISyntaxException {
         String normalizedFormat = fileFormat.toLowerCase();
         if (!SUPPORTED_FILE_FORMATS.containsKey(normalizedFormat)) {
-            String message = "Invalid file format. Valid Formats: [" + Joiner.on(", ").join(SUPPORTED_FILE_FORMATS.keySet()) + "]";
-            return new ResponseEntity<>(message.getBytes(), HttpStatus.BAD_REQUEST);
+            return completedFuture(invalidFormat());
         }
-        return buildResponseEntity(filterName, normalizedFormat);
+        return buildResponseEntity(filterName, normalizedFormat, quality, compression, composite, requestParameters,
+                new SourceImageLoader());
     }
 
-    private ResponseEntity<byte[]> buildResponseEntity(@PathVariable("name") String filterName, String fileFormat) throws IOException {
-        BufferedImage sourceImage = ImageIO.read(new URL(sourceUrl));
-        Optional<FilterResult> targetImage = filterService.transformImage(sourceImage, filterName);
-        if (targetImage.isPresent()) {
-            return buildSuccessResponse(compositeService.buildComposite(sourceImage, targetImage.get()), fileFormat);
-        } else {
-            return new ResponseEntity<>("Invalid filter name".getBytes(), HttpStatus.BAD_REQUEST);
+    /**
+     * Filter an image uploaded as the request body, e.g.
+     * <code>curl -H 'Content-Type: image/jpeg' --data-binary @photo.jpg .../filter/OilPaint/png</code>. The image is
+     * turned away with 413 if its header shows too many pixels; otherwise it is decoded straight from the request
+     * stream on a filter thread. Takes the same parameters as the GET.
+     */
+    @RequestMapping(value = "/filter/{name}/{format}", method = RequestMethod.POST,
+            consumes = {"image/*", APPLICATION_OCTET_STREAM_VALUE})
+    public CompletableFuture<ResponseEntity<byte[]>> filterUploadedImage(@PathVariable("name") String filterName,
+            @PathVariable("format") String fileFormat, @RequestParam(value = "quality", required = false) Integer quality,
+            @RequestParam(value = "compression", required = false) Integer compression,
+            @RequestParam(value = "composite", defaultValue = "true") boolean composite,
+            @RequestParam Map<String, String> requestParameters, InputStream body) throws IOException {
+        return filterUpload(filterName, fileFormat, quality, compression, composite, requestParameters, () -> body);
+    }
+
+    /**
+     * Filter an image uploaded from a form, as the <code>image</code> part of a multipart request.
+     */
+    @RequestMapping(value = "/filter/{name}/{format}", method = RequestMethod.POST, consumes = MULTIPART_FORM_DATA_VALUE)
+    public CompletableFuture<ResponseEntity<byte[]>> filterUploadedImage(@PathVariable("name") String filterName,
+            @PathVariable("format") String fileFormat, @RequestParam(value = "quality", required = false) Integer quality,
+            @RequestParam(value = "compression", required = false) Integer compression,
+            @RequestParam(value = "composite", defaultValue = "true") boolean composite,
+            @RequestParam Map<String, String> requestParameters, @RequestPart("image") MultipartFile image) throws IOException {
+        return filterUpload(filterName, fileFormat, quality, compression, composite, requestParameters, image::getInputStream);
+    }
+
+    private CompletableFuture<ResponseEntity<byte[]>> filterUpload(String filterName, String fileFormat,
+            Integer quality, Integer compression, boolean composite, Map<String, String> requestParameters,
+            UploadBody body) throws IOException {
+        String normalizedFormat = fileFormat.toLowerCase();
+        if (!SUPPORTED_FILE_FORMATS.containsKey(normalizedFormat)) {
+            return completedFuture(invalidFormat());
+        }
+        return buildResponseEntity(filterName, normalizedFormat, quality, compression, composite, requestParameters,
+                new UploadLoader(body));
+    }
+
+    /**
+     * Filter the source image strip by strip and stream the result, so sources too large to decode in one piece can
+     * still be processed. Only the filtered image is returned, without the before/after composite.<p/>
+     *
+     * The source is fetched and filtered on a filter thread, which writes the encoded strips into a pipe that the
+     * response is streamed from, so tiled requests are admitted, and turned away when busy, like any other filter work.
+     */
+    @RequestMapping(value = "/filter/{name}/{format}", params = "tiled=true", method = RequestMethod.GET)
+    public ResponseEntity<StreamingResponseBody> getTiledImage(@PathVariable("name") String filterName, @PathVariable("format") String fileFormat,
+            @RequestParam(value = "compression", required = false) Integer compression,
+            @RequestParam Map<String, String> requestParameters) throws IOException {
+        if (!TiledFilterService.TILED_FORMAT.equals(fileFormat.toLowerCase())) {
+            throw new IllegalArgumentException("Tiled processing only supports the " + TiledFilterService.TILED_FORMAT
+                    + " format");
+        }
+        Optional<FilterPipeline> pipeline = filterService.getPipeline(filterName, requestParameters);
+        if (!pipeline.isPresent()) {
+            throw new IllegalArgumentException("Invalid filter name");
+        }
+        if (pipeline.get().getKernelRadius() == ImageFilter.UNBOUNDED_RADIUS) {
+            throw new IllegalArgumentException("Filter " + pipeline.get().getName()
+                    + " needs the whole image and cannot be tiled");
+        }
+        EncodeOptions options = EncodeOptions.of(TiledFilterService.TILED_FORMAT, null, compression);
+
+        PipedInputStream rendered = new PipedInputStream(TILED_PIPE_BYTES);
+        PipedOutputStream sink = new PipedOutputStream(rendered);
+        CompletableFuture<Void> render = filterExecutor.submit(() -> {
+            try (OutputStream out = sink) {
+                SourceImage sourceImage = sourceImageService.getSourceImage();
+                tiledFilterService.transform(sourceImage.openStream(), pipeline.get(), options, out);
+            }
+            return null;
+        });
+        return streamingResponse(out -> {
+            // closing the pipe when the client goes away makes the render fail its next write and stop
+            try (InputStream in = rendered) {
+                ByteStreams.copy(in, out);
+            }
+            // a render that failed part way through closed the pipe early, so don't end the response as if it were
+            // whole
+            try {
+                render.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for the tiled render");
+            } catch (ExecutionException e) {
+                throw new IOException("The tiled render failed", e.getCause());
+            }
+        }, TiledFilterService.TILED_FORMAT);
+    }
+
+    /**
+     * Stream a looping animated GIF of the source image rippling.
+     *
+     * @param frames How many frames the ripples take to travel one wavelength.
+     * @param delayMillis How long to show each frame.
+     * @param requestParameters All the request parameters, of which <code>frequency</code> and <code>power</code>
+     *                          tune the ripples.
+     */
+    @RequestMapping("/animation/ripple")
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> getRippleAnimation(@RequestParam(value = "frames", defaultValue = "12") int frames,
+            @RequestParam(value = "delay", defaultValue = "80") int delayMillis,
+            @RequestParam Map<String, String> requestParameters) throws IOException {
+        if (frames < 2 || frames > MAX_ANIMATION_FRAMES) {
+            throw new IllegalArgumentException("An animation has between 2 and " + MAX_ANIMATION_FRAMES + " frames");
+        }
+        if (delayMillis < 10 || delayMillis > 10000) {
+            throw new IllegalArgumentException("The frame delay is between 10 and 10000 milliseconds");
+        }
+        FilterParameters parameters = FilterParameters.parse(rippleFilter.getParameters(), requestParameters);
+
+        // the source may still have to be fetched, so that happens on a filter thread too
+        return filterExecutor.submit(() -> {
+            SourceImage sourceImage = sourceImageService.getSourceImage();
+            if (tiledFilterService.requiresTiling(sourceImage.getPixelCount())) {
+                throw new ImageTooLargeException("The source image is too large to animate");
+            }
+            AnimationService.Animation animation = animationService.startRipple(sourceImage.getImage(), parameters, frames);
+            return streamingResponse(out -> animation.writeGif(delayMillis, out), IMAGE_GIF.getSubtype());
+        });
+    }
+
+    /**
+     * Run the genetic filter and stream its progress as server-sent events: a <code>progress</code> event every few
+     * generations with the best score so far and a small PNG preview, then a <code>result</code> event with why the run
+     * stopped and the full-size image. Closing the connection stops the run, and so does the response timing out a
+     * minute after the run's time budget is up.
+     *
+     * @param every How many generations between progress events.
+     * @param previewWidth Width of the preview images; their height keeps the source's aspect ratio.
+     * @param budgetMillis A time budget for this run. It can only tighten the configured budget.
+     * @param targetScore Stop once the best score is at or below this.
+     * @param islands How many islands to evolve in parallel; 1 is a single population.
+     * @param islandSize How many candidates on each island.
+     * @param migrateEvery How many generations between migrations.
+     * @param migrants How many of each island's best candidates migrate to the next island.
+     */
+    @RequestMapping("/evolve")
+    public ResponseEntity<SseEmitter> evolve(@RequestParam(value = "every", defaultValue = "10") int every,
+            @RequestParam(value = "preview", defaultValue = "160") int previewWidth,
+            @RequestParam(value = "budgetms", required = false) Long budgetMillis,
+            @RequestParam(value = "target", required = false) Long targetScore,
+            @RequestParam(value = "islands", required = false) Integer islands,
+            @RequestParam(value = "islandsize", required = false) Integer islandSize,
+            @RequestParam(value = "migrateevery", required = false) Integer migrateEvery,
+            @RequestParam(value = "migrants", required = false) Integer migrants) throws IOException {
+        IslandOptions islandOptions;
+        try {
+            islandOptions = geneticFilter.islandOptions(islands, islandSize, migrateEvery, migrants);
+        } catch (IllegalArgumentException e) {
+            // the client is expecting an event stream, so say what was wrong in one
+            SseEmitter emitter = new SseEmitter();
+            emitter.send(SseEmitter.event().name("error").data(e.getMessage()));
+            emitter.complete();
+            return new ResponseEntity<>(emitter, HttpStatus.BAD_REQUEST);
+        }
+        StoppingCriteria criteria = geneticFilter.getStoppingCriteria();
+        if (budgetMillis != null && budgetMillis > 0) {
+            criteria = criteria.withTimeBudget(budgetMillis);
+        }
+        if (targetScore != null) {
+            criteria = criteria.withTargetScore(targetScore);
+        }
+        final StoppingCriteria stoppingCriteria = criteria;
+        final int reportEvery = Math.max(1, every);
+        final int width = Math.max(1, Math.min(previewWidth, MAX_PREVIEW_WIDTH));
+
+        // a run stops on its own within its budget; the grace covers waiting for a filter thread and the final image
+        SseEmitter emitter = stoppingCriteria.getTimeBudgetMillis() > 0
+                ? new SseEmitter(stoppingCriteria.getTimeBudgetMillis() + EVOLVE_GRACE_MILLIS)
+                : new SseEmitter();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        emitter.onCompletion(() -> cancelled.set(true));
+        emitter.onTimeout(() -> cancelled.set(true));
+
+        filterExecutor.submit(() -> {
+            SourceImage sourceImage = sourceImageService.getSourceImage();
+            BufferedImage image = sourceImage.getImage();
+            try {
+                geneticFilter.checkPopulationSize(islandOptions, image);
+            } catch (IllegalArgumentException e) {
+                sendEvent(emitter, cancelled, "error", e.getMessage());
+                return null;
+            }
+            EvolutionResult result = geneticFilter.evolve(image, sourceImage.getContentHash(), stoppingCriteria, islandOptions, reportEvery, (generation, best, elapsedMillis) -> {
+                if (cancelled.get()) {
+                    return false;
+                }
+                String preview;
+                try {
+                    preview = dataUri(preview(best, image, width));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                sendEvent(emitter, cancelled, "progress", ImmutableMap.of(
+                        "generation", generation,
+                        "score", best.getTotalScore(),
+                        "elapsedMillis", elapsedMillis,
+                        "preview", preview));
+                return !cancelled.get();
+            });
+            sendEvent(emitter, cancelled, "result", ImmutableMap.of(
+                    "generation", result.getGenerations(),
+                    "score", result.getBest().getTotalScore(),
+                    "elapsedMillis", result.getElapsedMillis(),
+                    "stopReason", result.getStopReason(),
+                    "image", dataUri(GeneticFilter.toImage(result.getBest(), image))));
+            return result;
+        }).whenComplete((result, e) -> {
+            if (e != null) {
+                emitter.completeWithError(e);
+            } else {
+                emitter.complete();
+            }
+        });
+        return ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * Send an event unless the client has gone away. A failed send means it has, so the run is cancelled.
+     */
+    private void sendEvent(SseEmitter emitter, AtomicBoolean cancelled, String name, Object data) {
+        if (cancelled.get()) {
+            return;
+        }
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data, APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            cancelled.set(true);
+        }
+    }
+
+    private BufferedImage preview(Candidate candidate, BufferedImage sourceImage, int width) {
+        BufferedImage fullSize = GeneticFilter.toImage(candidate, sourceImage);
+        int height = Math.max(1, (int) Math.round((double) sourceImage.getHeight() * width / sourceImage.getWidth()));
+        BufferedImage scaled = new BufferedImage(width, height, fullSize.getType());
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(fullSize, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private String dataUri(BufferedImage image) throws IOException {
+        byte[] png = imageEncoder.encode(image, IMAGE_PNG.getSubtype(), EncodeOptions.DEFAULT);
+        return "data:" + IMAGE_PNG_VALUE + ";base64," + Base64.getEncoder().encodeToString(png);
+    }
+
+    /**
+     * Validation and cache hits are answered on the calling thread; anything that has to run a filter is handed to the
+     * {@link FilterExecutor}. Identical deterministic requests that are already being rendered join that render.
+     */
+    private CompletableFuture<ResponseEntity<byte[]>> buildResponseEntity(String filterName, String fileFormat,
+            Integer quality, Integer compression, boolean composite, Map<String, String> requestParameters,
+            SourceLoader sourceLoader) throws IOException {
+        Optional<FilterPipeline> pipeline;
+        try {
+            pipeline = filterService.getPipeline(filterName, requestParameters);
+        } catch (IllegalArgumentException e) {
+            return completedFuture(errorBody(e.getMessage()));
+        }
+        if (!pipeline.isPresent()) {
+            return completedFuture(errorBody("Invalid filter name"));
+        }
+        EncodeOptions options;
+        try {
+            options = EncodeOptions.of(fileFormat, quality, compression);
+        } catch (IllegalArgumentException e) {
+            return completedFuture(errorBody(e.getMessage()));
+        }
+
+        Optional<ImageSource> loaded;
+        try {
+            loaded = sourceLoader.loadIfReady();
+        } catch (IllegalArgumentException e) {
+            return completedFuture(imageError(e));
+        }
+        if (!loaded.isPresent()) {
+            // getting the image is as much work as filtering it, so it waits its turn for a filter thread too, and the
+            // result can only be looked up once the image, and with it the content hash, is there
+            try {
+                return filterExecutor.submit(() -> {
+                    ImageSource sourceImage;
+                    try {
+                        sourceImage = sourceLoader.load();
+                    } catch (IllegalArgumentException e) {
+                        return imageError(e);
+                    }
+                    return render(sourceImage, pipeline.get(), fileFormat, options, composite);
+                });
+            } catch (RejectedExecutionException e) {
+                sourceLoader.abandon();
+                throw e;
+            }
+        }
+
+        ImageSource sourceImage = loaded.get();
+        if (!pipeline.get().isDeterministic()) {
+            return filterExecutor.submit(() -> render(sourceImage, pipeline.get(), fileFormat, options, composite));
+        }
+        ResultKey key = resultKey(sourceImage, pipeline.get(), fileFormat, options, composite);
+        Optional<EncodedImage> cached = resultCache.getIfPresent(key);
+        if (cached.isPresent()) {
+            return completedFuture(encodedResponse(cached.get(), fileFormat));
+        }
+        return inFlightRequests.get(key, () -> filterExecutor.submit(() -> resultCache.get(key,
+                () -> encode(sourceImage, pipeline.get(), fileFormat, options, composite))))
+                .thenApply(encoded -> encodedResponse(encoded, fileFormat));
+    }
+
+    /**
+     * Filter the image on the current thread, which must be a filter thread.
+     */
+    private ResponseEntity<byte[]> render(ImageSource sourceImage, FilterPipeline pipeline,
+            String fileFormat, EncodeOptions options, boolean composite) throws IOException {
+        if (!pipeline.isDeterministic()) {
+            // nothing to share or keep, so it is encoded for this response alone
+            try {
+                return encodedResponse(encode(sourceImage, pipeline, fileFormat, options, composite), fileFormat);
+            } catch (IllegalArgumentException e) {
+                // the genetic filter turns down images too large for even the smallest population
+                return imageError(e);
+            }
+        }
+        ResultKey key = resultKey(sourceImage, pipeline, fileFormat, options, composite);
+        EncodedImage encoded = resultCache.get(key, () -> encode(sourceImage, pipeline, fileFormat, options, composite));
+        return encodedResponse(encoded, fileFormat);
+    }
+
+    private ResultKey resultKey(ImageSource sourceImage, FilterPipeline pipeline, String fileFormat,
+            EncodeOptions options, boolean composite) {
+        ImmutableMap.Builder<String, String> parameters = ImmutableMap.<String, String>builder()
+                .putAll(options.toParameters())
+                .putAll(pipeline.getParameters().toParameters());
+        if (!composite) {
+            parameters.put("composite", "false");
+        }
+        return new ResultKey(sourceImage.getContentHash(), pipeline.getName(), fileFormat, parameters.build());
+    }
+
+    private EncodedImage encode(ImageSource sourceImage, FilterPipeline pipeline, String fileFormat,
+            EncodeOptions options, boolean composite) throws IOException {
+        BufferedImage image = sourceImage.getImage();
+        FilterResult result = runFilter(sourceImage, pipeline);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeImage(image, result, composite, fileFormat, options, out);
+        return new EncodedImage(out.toByteArray(), result);
+    }
+
+    /**
+     * 413 for an image that is too large, 400 for anything else wrong with it.
+     */
+    private ResponseEntity<byte[]> imageError(IllegalArgumentException e) {
+        if (e instanceof ImageTooLargeException) {
+            return errorBody(e.getMessage(), HttpStatus.PAYLOAD_TOO_LARGE);
+        }
+        return errorBody(e.getMessage());
+    }
+
+    /**
+     * The configured source image, unless it is too large to filter in one piece.
+     */
+    private ImageSource checkSourceImage(SourceImage sourceImage) {
+        if (tiledFilterService.requiresTiling(sourceImage.getPixelCount())) {
+            throw new ImageTooLargeException("The source image is too large to process in one piece; request png with ?tiled=true");
+        }
+        return sourceImage;
+    }
+
+    /**
+     * Gets the image a request filters, once the rest of the request has been validated.
+     */
+    private interface SourceLoader {
+        /**
+         * Runs on the calling thread, so it only does what is cheap, like checking an upload's header.
+         *
+         * @return The image, or empty if getting it takes real work, which is left to {@link #load()}.
+         * @throws ImageTooLargeException If the image is too large to filter.
+         * @throws IllegalArgumentException If there is something else wrong with the image.
+         */
+        Optional<ImageSource> loadIfReady() throws IOException;
+
+        /**
+         * Runs on a filter thread when {@link #loadIfReady()} came back empty.
+         *
+         * @throws ImageTooLargeException If the image is too large to filter.
+         * @throws IllegalArgumentException If there is something else wrong with the image.
+         */
+        ImageSource load() throws IOException;
+
+        /**
+         * Called instead of {@link #load()} if the work couldn't be queued.
+         */
+        default void abandon() {}
+    }
+
+    /**
+     * Loads the configured source image. Once it has been fetched it is ready straight away; until then, the fetch is
+     * left to a filter thread.
+     */
+    private class SourceImageLoader implements SourceLoader {
+        @Override
+        public Optional<ImageSource> loadIfReady() {
+            return sourceImageService.getIfLoaded().map(FilterController.this::checkSourceImage);
+        }
+
+        @Override
+        public ImageSource load() throws IOException {
+            return checkSourceImage(sourceImageService.getSourceImage());
+        }
+    }
+
+    /**
+     * Checks an upload's header on the calling thread and decodes it on a filter thread.
+     */
+    private class UploadLoader implements SourceLoader {
+        private final UploadBody body;
+        private UploadService.Upload upload;
+
+        UploadLoader(UploadBody body) {
+            this.body = body;
+        }
+
+        @Override
+        public Optional<ImageSource> loadIfReady() throws IOException {
+            upload = uploadService.open(body.open());
+            return Optional.empty();
+        }
+
+        @Override
+        public ImageSource load() throws IOException {
+            return upload.decode();
+        }
+
+        @Override
+        public void abandon() {
+            upload.close();
+        }
+    }
+
+    /**
+     * Opens the body of an upload, which is only read once the request has been validated.
+     */
+    @FunctionalInterface
+    private interface UploadBody {
+        InputStream open() throws IOException;
+    }
+
+    private FilterResult runFilter(ImageSource sourceImage, FilterPipeline pipeline) throws IOException {
+        FilterResult result = pipeline.transform(sourceImage.getImage(), sourceImage.getContentHash());
+        filterMetrics.recordFilter(pipeline.getName(), result);
+        return result;
+    }
+
+    /**
+     * Encode the filtered image, or the composite of the source and filtered images, into the output. The composite
+     * is only drawn here, once we know it is wanted, into a buffer that is recycled as soon as it has been encoded.
+     */
+    private void writeImage(BufferedImage sourceImage, FilterResult result, boolean composite, String fileFormat,
+            EncodeOptions options, OutputStream out) throws IOException {
+        if (!composite) {
+            imageEncoder.encode(result.getOutputImage(), fileFormat, options, out);
+            return;
+        }
+        BufferedImage compositeImage = compositeService.leaseComposite(sourceImage, result);
+        try {
+            imageEncoder.encode(compositeImage, fileFormat, options, out);
+        } finally {
+            compositeService.releaseComposite(compositeImage);
         }
     }
 
-    private ResponseEntity<byte[]> buildSuccessResponse(BufferedImage finalImage, String fileFormat) throws IOException {
-        ByteArrayOutputStream imageByteStream = new ByteArrayOutputStream();
-        ImageIO.write(finalImage, fileFormat, imageByteStream);
+    private ResponseEntity<byte[]> encodedResponse(EncodedImage image, String fileFormat) {
+        final HttpHeaders headers = imageHeaders(fileFormat, image.getElapsedNanos(), image.getStageTimes());
+        byte[] imageBytes = image.getBytes();
+        headers.setContentLength(imageBytes.length);
+        return new ResponseEntity<>(imageBytes, headers, HttpStatus.CREATED);
+    }
+
+    /**
+     * Content type plus the filter timings as a <code>Server-Timing</code> header, e.g.
+     * <code>filter;dur=35.2, stage1;desc="OldTimeyEffect.convolve";dur=23.1, stage2;desc="Sepia";dur=11.9</code>.
+     */
+    private HttpHeaders imageHeaders(String fileFormat, long elapsedNanos, List<StageTime> stageTimes) {
+        final HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(SUPPORTED_FILE_FORMATS.get(fileFormat));
+        StringBuilder timing = new StringBuilder("filter;dur=").append(toMillis(elapsedNanos));
+        for (int i = 0; stageTimes.size() > 1 && i < stageTimes.size(); i++) {
+            StageTime stageTime = stageTimes.get(i);
+            timing.append(", stage").append(i + 1).append(";desc=\"").append(stageTime.getStageName())
+                    .append("\";dur=").append(toMillis(stageTime.getElapsedNanos()));
+        }
+        headers.set(SERVER_TIMING, timing.toString());
+        return headers;
+    }
+
+    private static String toMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    private ResponseEntity<StreamingResponseBody> streamingResponse(StreamingResponseBody body, String fileFormat) {
         final HttpHeaders headers = new HttpHeaders();
         headers.setContentType(SUPPORTED_FILE_FORMATS.get(fileFormat));
-        return new ResponseEntity<>(imageByteStream.toByteArray(), headers, HttpStatus.CREATED);
+        return new ResponseEntity<>(body, headers, HttpStatus.CREATED);
+    }
+
+    private ResponseEntity<byte[]> invalidFormat() {
+        return errorBody("Invalid file format. Valid Formats: [" + Joiner.on(", ").join(SUPPORTED_FILE_FORMATS.keySet()) + "]");
+    }
+
+    private ResponseEntity<byte[]> errorBody(String message) {
+        return errorBody(message, HttpStatus.BAD_REQUEST);
+    }
+
+    private ResponseEntity<byte[]> errorBody(String message, HttpStatus status) {
+        final HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.TEXT_PLAIN);
+        return new ResponseEntity<>(message.getBytes(), headers, status);
+    }
+
+    /**
+     * The tiled and animation endpoints stream their images, so they turn down bad requests by throwing rather than
+     * by returning an error body.
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<byte[]> handleInvalidRequest(IllegalArgumentException e) {
+        return imageError(e);
+    }
+
+    /**
+     * The filter queue is full; tell the client to back off instead of making it wait.
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<byte[]> handleRejection() {
+        final HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(filterExecutor.getRetryAfterSeconds()));
+        return new ResponseEntity<>("Too many filter requests in progress; try again later".getBytes(), headers,
+                HttpStatus.SERVICE_UNAVAILABLE);
     }
 
     @Inject
-    public void setSourceUrl(@Value("${imagechallenge.sourceurl}") String theSourceUrl) {
-        sourceUrl = theSourceUrl;
+    public void setSourceImageService(SourceImageService sourceImageService) {
+        this.sourceImageService = sourceImageService;
     }
 
     @Inject
@@ -91,4 +692,54 @@ public class FilterController {
     public void setCompositeService(CompositeService compositeService) {
         this.compositeService = compositeService;
     }
+
+    @Inject
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    @Inject
+    public void setTiledFilterService(TiledFilterService tiledFilterService) {
+        this.tiledFilterService = tiledFilterService;
+    }
+
+    @Inject
+    public void setFilterExecutor(FilterExecutor filterExecutor) {
+        this.filterExecutor = filterExecutor;
+    }
+
+    @Inject
+    public void setInFlightRequests(InFlightRequests inFlightRequests) {
+        this.inFlightRequests = inFlightRequests;
+    }
+
+    @Inject
+    public void setFilterMetrics(FilterMetrics filterMetrics) {
+        this.filterMetrics = filterMetrics;
+    }
+
+    @Inject
+    public void setImageEncoder(ImageEncoder imageEncoder) {
+        this.imageEncoder = imageEncoder;
+    }
+
+    @Inject
+    public void setGeneticFilter(GeneticFilter geneticFilter) {
+        this.geneticFilter = geneticFilter;
+    }
+
+    @Inject
+    public void setAnimationService(AnimationService animationService) {
+        this.animationService = animationService;
+    }
+
+    @Inject
+    public void setUploadService(UploadService uploadService) {
+        this.uploadService = uploadService;
+    }
+
+    @Inject
+    public void setRippleFilter(RippleFilter rippleFilter) {
+        this.rippleFilter = rippleFilter;
+    }
 }
@@ -0,0 +1,128 @@
+package com.nerdery.imagechallenge.controllers;
+
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableMap;
+import com.nerdery.imagechallenge.services.FilterExecutor;
+import com.nerdery.imagechallenge.services.FilterMetrics;
+import com.nerdery.imagechallenge.services.FilterWarmup;
+import com.nerdery.imagechallenge.services.InFlightRequests;
+import com.nerdery.imagechallenge.services.ResultCache;
+import com.nerdery.imagechallenge.services.SourceImageService;
+import com.nerdery.imagechallenge.services.UploadService;
+import com.nerdery.imagechallenge.services.filters.GeneticFilter;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.inject.Inject;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reports filter timings and the state of the caches and the filter queue as JSON, and whether the application is
+ * ready for traffic.
+ */
+@RestController
+public class MetricsController {
+
+    private FilterMetrics filterMetrics;
+    private FilterExecutor filterExecutor;
+    private InFlightRequests inFlightRequests;
+    private ResultCache resultCache;
+    private SourceImageService sourceImageService;
+    private GeneticFilter geneticFilter;
+    private FilterWarmup filterWarmup;
+    private UploadService uploadService;
+
+    /**
+     * Readiness for load balancers and deploy checks: 503 until the filters have been warmed up, then 200.
+     */
+    @RequestMapping("/ready")
+    public ResponseEntity<Map<String, Object>> getReadiness() {
+        boolean ready = filterWarmup.isReady();
+        Map<String, Object> body = ImmutableMap.of("ready", ready, "warmupMillis", filterWarmup.getElapsedMillis());
+        return new ResponseEntity<>(body, ready ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @RequestMapping("/metrics")
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>(filterMetrics.snapshot());
+
+        CacheStats cacheStats = resultCache.getStats();
+        metrics.put("resultCache", ImmutableMap.builder()
+                .put("entries", resultCache.getEntryCount())
+                .put("bytes", resultCache.getTotalBytes())
+                .put("maxBytes", resultCache.getMaxBytes())
+                .put("hits", cacheStats.hitCount())
+                .put("misses", cacheStats.missCount())
+                .put("evictions", cacheStats.evictionCount())
+                .put("hitRatio", cacheStats.hitRate())
+                .build());
+        CacheStats referenceStats = geneticFilter.getReferenceCacheStats();
+        metrics.put("geneticReferences", ImmutableMap.of(
+                "entries", geneticFilter.getReferenceCacheSize(),
+                "hits", referenceStats.hitCount(),
+                "misses", referenceStats.missCount(),
+                "evictions", referenceStats.evictionCount()));
+        metrics.put("sourceImage", ImmutableMap.of(
+                "hits", sourceImageService.getHits(),
+                "misses", sourceImageService.getMisses(),
+                "refreshes", sourceImageService.getRefreshes(),
+                "notModified", sourceImageService.getNotModified()));
+        metrics.put("uploads", ImmutableMap.of(
+                "accepted", uploadService.getAccepted(),
+                "rejected", uploadService.getRejected()));
+        metrics.put("executor", ImmutableMap.of(
+                "queueDepth", filterExecutor.getQueueDepth(),
+                "queueCapacity", filterExecutor.getQueueCapacity(),
+                "active", filterExecutor.getActiveCount(),
+                "completed", filterExecutor.getCompletedCount(),
+                "rejections", filterExecutor.getRejections()));
+        metrics.put("inFlight", ImmutableMap.of(
+                "running", inFlightRequests.getInFlightCount(),
+                "started", inFlightRequests.getStartedComputations(),
+                "saved", inFlightRequests.getSavedComputations()));
+        return metrics;
+    }
+
+    @Inject
+    public void setFilterMetrics(FilterMetrics filterMetrics) {
+        this.filterMetrics = filterMetrics;
+    }
+
+    @Inject
+    public void setFilterExecutor(FilterExecutor filterExecutor) {
+        this.filterExecutor = filterExecutor;
+    }
+
+    @Inject
+    public void setInFlightRequests(InFlightRequests inFlightRequests) {
+        this.inFlightRequests = inFlightRequests;
+    }
+
+    @Inject
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    @Inject
+    public void setSourceImageService(SourceImageService sourceImageService) {
+        this.sourceImageService = sourceImageService;
+    }
+
+    @Inject
+    public void setGeneticFilter(GeneticFilter geneticFilter) {
+        this.geneticFilter = geneticFilter;
+    }
+
+    @Inject
+    public void setFilterWarmup(FilterWarmup filterWarmup) {
+        this.filterWarmup = filterWarmup;
+    }
+
+    @Inject
+    public void setUploadService(UploadService uploadService) {
+        this.uploadService = uploadService;
+    }
+}
@@ -1,44 +1,79 @@
 package com.nerdery.imagechallenge.genetic;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.security.SecureRandom;
-import java.util.Arrays;
-import java.util.Comparator;
-import java.util.stream.IntStream;
-
+import java.util.SplittableRandom;
+
+/**
+ * A candidate image, scored against the reference image it is evolving towards.
+ *
+ * A candidate doesn't own its pixels: it is a view of one slot in its {@link Population}'s storage, which holds every
+ * candidate of a generation back to back in one pixel array and one score array. The slot is reused from generation
+ * to generation, so a candidate is only valid until the population evolves again.
+ *
+ * The per-pixel scores and the total score are kept up to date as pixels change, so only the pixels that actually
+ * changed are ever rescored. A pixel score is at most 3 * 255, so scores are stored as shorts.
+ */
 public class Candidate {
-    private static final Logger LOGGER = LoggerFactory.getLogger(Candidate.class);
-    private static final SecureRandom RANDOM = new SecureRandom();
 
     private final int[] data;
-    private final int[] scores;
-    private long totalScore = Long.MAX_VALUE;
-    private int size;
+    private final short[] scores;
+    private final int offset;
+    private final int size;
+    private final int[] reference;
+    private long totalScore;
 
-    protected Candidate(final int [] reference) {
-        data = Arrays.copyOf(reference, reference.length);
-        scores = new int[reference.length];
+    /**
+     * @param data The pixels of every candidate in the generation.
+     * @param scores The pixel scores of every candidate in the generation.
+     * @param slot Which candidate of the generation this is.
+     * @param reference The reference data. It is shared, not copied, and must not change.
+     */
+    Candidate(final int[] data, final short[] scores, final int slot, final int[] reference) {
+        this.data = data;
+        this.scores = scores;
         this.size = reference.length;
+        this.offset = slot * size;
+        this.reference = reference;
     }
 
-    public static Candidate fromReference(final int[] reference) {
-        final Candidate candidate = new Candidate(reference);
-        candidate.randomDelta();
-        return candidate;
+    /**
+     * Start over from a randomly jittered copy of the starting data.
+     *
+     * @param start The data to start from.
+     * @param random The random stream to draw from.
+     */
+    void reset(final int[] start, final SplittableRandom random) {
+        for (int i = 0; i < size; i++) {
+            data[offset + i] = Colors.jitterPixelColors(start[i], random);
+        }
+        calculateScore();
+    }
+
+    /**
+     * Overwrite this candidate with a copy of another, including its scores, so the copy can be bred without touching
+     * the original.
+     */
+    void copyFrom(final Candidate other) {
+        System.arraycopy(other.data, other.offset, data, offset, size);
+        System.arraycopy(other.scores, other.offset, scores, offset, size);
+        totalScore = other.totalScore;
     }
 
     public int getScore(final int index) {
-        return scores[index];
+        return scores[offset + index];
     }
 
     public int getPixel(final int index) {
-        return data[index];
+        return data[offset + index];
     }
 
+    /**
+     * Change a pixel and rescore just that pixel.
+     */
     public void setPixel(final int index, final int value) {
-        data[index] = value;
+        data[offset + index] = value;
+        final int score = calculateScore(index);
+        totalScore += score - scores[offset + index];
+        scores[offset + index] = (short) score;
     }
 
     /**
@@ -48,26 +83,45 @@ public class Candidate {
      * @param other The other candidate.
      */
     public void swapPixel(final int index, final Candidate other) {
-        final int value = data[index];
-        data[index] = other.getPixel(index);
-        other.setPixel(index, value);
+        swapPixels(index, index + 1, other);
     }
 
     /**
-     * Randomize all of the pixels in the data.
+     * Swap a range of pixels with another candidate. Both candidates must share the same reference data, so the
+     * scores move with the pixels and nothing has to be rescored.
+     *
+     * @param from The first index to swap, inclusive.
+     * @param to The last index to swap, exclusive.
+     * @param other The other candidate.
      */
-    protected void randomDelta() {
-        IntStream.range(0, size).forEach(i -> data[i] = Colors.jitterPixelColors(data[i]));
+    public void swapPixels(final int from, final int to, final Candidate other) {
+        long delta = 0;
+        for (int i = from; i < to; i++) {
+            final int value = data[offset + i];
+            data[offset + i] = other.data[other.offset + i];
+            other.data[other.offset + i] = value;
+
+            final short score = scores[offset + i];
+            scores[offset + i] = other.scores[other.offset + i];
+            other.scores[other.offset + i] = score;
+            delta += scores[offset + i] - score;
+        }
+        totalScore += delta;
+        other.totalScore -= delta;
     }
 
     /**
-     * Calculate the current score of this candidate based on the given reference data.
-     *
-     * @param reference The reference data.
+     * Recalculate every pixel score and the total score from scratch. The scores are kept up to date as pixels change,
+     * so this is only needed to check them.
      */
-    public void calculateScore(final int[] reference) {
-        IntStream.range(0, size).forEach(i -> scores[i] = calculateScore(i, reference));
-        totalScore = IntStream.of(scores).sum();
+    public void calculateScore() {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            final int score = calculateScore(i);
+            scores[offset + i] = (short) score;
+            total += score;
+        }
+        totalScore = total;
     }
 
     /**
@@ -76,22 +130,23 @@ public class Candidate {
      * Lower scores are better.
      *
      * @param index The pixel index.
-     * @param reference The reference data.
      * @return The pixel score.
      */
-    protected int calculateScore(final int index, final int[] reference) {
-        final int rScore = Math.abs(Colors.red(reference[index]) - Colors.red(data[index]));
-        final int gScore = Math.abs(Colors.green(reference[index]) - Colors.green(data[index]));
-        final int bScore = Math.abs(Colors.blue(reference[index]) - Colors.blue(data[index]));
+    protected int calculateScore(final int index) {
+        final int pixel = data[offset + index];
+        final int rScore = Math.abs(Colors.red(reference[index]) - Colors.red(pixel));
+        final int gScore = Math.abs(Colors.green(reference[index]) - Colors.green(pixel));
+        final int bScore = Math.abs(Colors.blue(reference[index]) - Colors.blue(pixel));
         return rScore + gScore + bScore;
     }
 
-    public int[] getData() {
-        return data;
-    }
-
-    public int[] getScores() {
-        return scores;
+    /**
+     * Copy the pixels out, since the slot they live in will be reused.
+     *
+     * @param target An array of at least {@link #getSize()} pixels.
+     */
+    public void copyPixelsTo(final int[] target) {
+        System.arraycopy(data, offset, target, 0, size);
     }
 
     public long getTotalScore() {
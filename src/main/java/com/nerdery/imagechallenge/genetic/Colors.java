@@ -1,9 +1,8 @@
 package com.nerdery.imagechallenge.genetic;
 
-import java.security.SecureRandom;
+import java.util.SplittableRandom;
 
 public class Colors {
-    private static final SecureRandom RANDOM = new SecureRandom();
     private static final int MAXIMUM_JITTER = 16;
 
     public static int red(final int pixel) {
@@ -22,25 +21,27 @@ public class Colors {
      * Given a pixel, randomly jitter its colors. This method does not affect the alpha component of the pixel.
      *
      * @param pixel The pixel to jitter.
+     * @param random The random stream to draw from.
      * @return The randomized pixel value.
      */
-    public static int jitterPixelColors(final int pixel) {
+    public static int jitterPixelColors(final int pixel, final SplittableRandom random) {
         final int a = (pixel >> 24) & 0xFF;
         final int r = (pixel >> 16) & 0xFF;
         final int g = (pixel >> 8)  & 0xFF;
         final int b = (pixel)       & 0xFF;
 
-        return packColor(a, randomColorAdjustment(r), randomColorAdjustment(g), randomColorAdjustment(b));
+        return packColor(a, randomColorAdjustment(r, random), randomColorAdjustment(g, random), randomColorAdjustment(b, random));
     }
 
     /**
      * Given some base color value, adjust it randomly within a fixed tolerance.
      *
      * @param colorValue The base color value.
+     * @param random The random stream to draw from.
      * @return The randomly-adjusted color value.
      */
-    public static int randomColorAdjustment(final int colorValue) {
-        return boundColor(colorValue + (RANDOM.nextInt(MAXIMUM_JITTER) * ((RANDOM.nextBoolean()) ? -1 : 1)));
+    public static int randomColorAdjustment(final int colorValue, final SplittableRandom random) {
+        return boundColor(colorValue + (random.nextInt(MAXIMUM_JITTER) * ((random.nextBoolean()) ? -1 : 1)));
     }
 
     /**
@@ -1,10 +1,8 @@
 package com.nerdery.imagechallenge.genetic;
 
-import java.security.SecureRandom;
-import java.util.stream.IntStream;
+import java.util.SplittableRandom;
 
 public class Crossover {
-    private static final SecureRandom RANDOM = new SecureRandom();
     private static final double CROSSOVER_RATE = 0.7;
 
     private Crossover() {}
@@ -14,11 +12,12 @@ public class Crossover {
      *
      * @param c1 The first candidate.
      * @param c2 The second candidate.
+     * @param random The random stream to draw from.
      * @return Whether or not crossover was performed.
      */
-    public static boolean attemptCrossover(final Candidate c1, final Candidate c2) {
-        if (RANDOM.nextFloat() > CROSSOVER_RATE) {
-            performCrossover(c1, c2);
+    public static boolean attemptCrossover(final Candidate c1, final Candidate c2, final SplittableRandom random) {
+        if (random.nextDouble() > CROSSOVER_RATE) {
+            performCrossover(c1, c2, random);
             return true;
         }
 
@@ -33,9 +32,10 @@ public class Crossover {
      *
      * @param c1 The first candidate.
      * @param c2 The second candidate.
+     * @param random The random stream to draw from.
      */
-    public static void performCrossover(final Candidate c1, final Candidate c2) {
-        final int mark = RANDOM.nextInt(c1.getSize());
-        IntStream.range(mark, c1.getSize()).forEach(i -> c1.swapPixel(i, c2));
+    public static void performCrossover(final Candidate c1, final Candidate c2, final SplittableRandom random) {
+        final int mark = random.nextInt(c1.getSize());
+        c1.swapPixels(mark, c1.getSize(), c2);
     }
 }
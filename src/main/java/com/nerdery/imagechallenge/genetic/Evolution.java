@@ -0,0 +1,79 @@
+package com.nerdery.imagechallenge.genetic;
+
+import com.nerdery.imagechallenge.genetic.EvolutionResult.StopReason;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs generations of a population until one of the {@link StoppingCriteria} is met, the listener asks to stop, or
+ * the thread is interrupted.
+ */
+public class Evolution {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Evolution.class);
+
+    private Evolution() {}
+
+    /**
+     * @param population A population, or islands of them, that has been reset.
+     * @param criteria When to stop.
+     * @param reportEvery How many generations between calls to the listener. The final generation is always reported
+     *                    too, unless the listener stopped the run.
+     * @param listener Hears about progress, and can stop the run.
+     */
+    public static EvolutionResult evolve(final Evolvable population, final StoppingCriteria criteria,
+                                         final int reportEvery, final ProgressListener listener) {
+        final long start = System.nanoTime();
+        final long deadline = start + TimeUnit.MILLISECONDS.toNanos(criteria.getTimeBudgetMillis());
+
+        // the best score seen at the start of the current plateau window
+        long windowScore = population.topScore().getTotalScore();
+        int windowStart = 0;
+
+        int generation = 0;
+        StopReason stopReason = StopReason.GENERATIONS;
+        while (generation < criteria.getMaxGenerations()) {
+            population.generation();
+            generation++;
+
+            final Candidate best = population.topScore();
+            final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            LOGGER.debug("Completed generation {} with best score {}", generation, best.getTotalScore());
+
+            if (generation % reportEvery == 0 && !listener.onProgress(generation, best, elapsedMillis)) {
+                stopReason = StopReason.CANCELLED;
+                break;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                stopReason = StopReason.CANCELLED;
+                break;
+            }
+            if (best.getTotalScore() <= criteria.getTargetScore()) {
+                stopReason = StopReason.TARGET_SCORE;
+                break;
+            }
+            if (criteria.getTimeBudgetMillis() > 0 && System.nanoTime() - deadline >= 0) {
+                stopReason = StopReason.TIME_BUDGET;
+                break;
+            }
+            if (criteria.getPlateauGenerations() > 0 && generation - windowStart >= criteria.getPlateauGenerations()) {
+                if (windowScore - best.getTotalScore() < windowScore * criteria.getPlateauImprovement()) {
+                    stopReason = StopReason.PLATEAU;
+                    break;
+                }
+                windowScore = best.getTotalScore();
+                windowStart = generation;
+            }
+        }
+
+        final Candidate best = population.topScore();
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (stopReason != StopReason.CANCELLED && generation % reportEvery != 0) {
+            listener.onProgress(generation, best, elapsedMillis);
+        }
+        LOGGER.info("Stopped after {} generations and {} ms ({}) with best score {}", generation, elapsedMillis,
+                stopReason, best.getTotalScore());
+        return new EvolutionResult(best, generation, elapsedMillis, stopReason);
+    }
+}
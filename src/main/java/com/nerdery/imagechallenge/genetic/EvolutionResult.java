@@ -0,0 +1,39 @@
+package com.nerdery.imagechallenge.genetic;
+
+/**
+ * The outcome of an evolution run.
+ */
+public class EvolutionResult {
+
+    public enum StopReason {
+        GENERATIONS, TIME_BUDGET, TARGET_SCORE, PLATEAU, CANCELLED
+    }
+
+    private final Candidate best;
+    private final int generations;
+    private final long elapsedMillis;
+    private final StopReason stopReason;
+
+    public EvolutionResult(final Candidate best, final int generations, final long elapsedMillis, final StopReason stopReason) {
+        this.best = best;
+        this.generations = generations;
+        this.elapsedMillis = elapsedMillis;
+        this.stopReason = stopReason;
+    }
+
+    public Candidate getBest() {
+        return best;
+    }
+
+    public int getGenerations() {
+        return generations;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public StopReason getStopReason() {
+        return stopReason;
+    }
+}
@@ -0,0 +1,26 @@
+package com.nerdery.imagechallenge.genetic;
+
+/**
+ * Something that evolves candidates one generation at a time: a single {@link Population}, or several of them as an
+ * {@link IslandPopulation}.
+ */
+public interface Evolvable {
+
+    /**
+     * Start over with jittered copies of the starting data.
+     *
+     * @param start The data to start from.
+     * @param reference The reference data to evolve towards.
+     */
+    void resetPopulation(int[] start, int[] reference);
+
+    /**
+     * Breed the next generation.
+     */
+    void generation();
+
+    /**
+     * @return The best candidate of the current generation, valid until the next one.
+     */
+    Candidate topScore();
+}
@@ -0,0 +1,107 @@
+package com.nerdery.imagechallenge.genetic;
+
+/**
+ * How to split an evolution run into islands: how many, how many candidates each, and how often and how many of the
+ * best candidates migrate to the next island in the ring. A single island is a plain {@link Population}.
+ */
+public class IslandOptions {
+    private final int islands;
+    private final int islandSize;
+    private final int migrationInterval;
+    private final int migrants;
+
+    private IslandOptions(final int islands, final int islandSize, final int migrationInterval, final int migrants) {
+        this.islands = islands;
+        this.islandSize = islandSize;
+        this.migrationInterval = migrationInterval;
+        this.migrants = migrants;
+    }
+
+    /**
+     * @param islands How many islands, at least 1.
+     * @param islandSize How many candidates on each island, at least 2.
+     * @param migrationInterval How many generations between migrations, at least 1.
+     * @param migrants How many of each island's best candidates replace the next island's worst, from 0 up to half an
+     *                 island.
+     * @throws IllegalArgumentException If any of them is out of range.
+     */
+    public static IslandOptions of(final int islands, final int islandSize, final int migrationInterval, final int migrants) {
+        if (islands < 1) {
+            throw new IllegalArgumentException("There must be at least 1 island");
+        }
+        if (islandSize < 2) {
+            throw new IllegalArgumentException("Each island needs at least 2 candidates");
+        }
+        if (migrationInterval < 1) {
+            throw new IllegalArgumentException("The migration interval must be at least 1 generation");
+        }
+        if (migrants < 0 || migrants > islandSize / 2) {
+            throw new IllegalArgumentException("Between 0 and " + islandSize / 2 + " candidates can migrate");
+        }
+        return new IslandOptions(islands, islandSize, migrationInterval, migrants);
+    }
+
+    /**
+     * @return These options with any of the given values replaced, or <code>null</code> to keep the current one.
+     * @throws IllegalArgumentException If the result is out of range.
+     */
+    public IslandOptions with(final Integer islands, final Integer islandSize, final Integer migrationInterval,
+                              final Integer migrants) {
+        return of(islands != null ? islands : this.islands,
+                islandSize != null ? islandSize : this.islandSize,
+                migrationInterval != null ? migrationInterval : this.migrationInterval,
+                migrants != null ? migrants : this.migrants);
+    }
+
+    /**
+     * @return These options with the islands shrunk so there are at most the given number of candidates in total, and
+     * no more migrants than the smaller islands allow; or these options if they are already within it.
+     * @throws IllegalArgumentException If that leaves fewer than 2 candidates on each island.
+     */
+    public IslandOptions limitedTo(final long maxCandidates) {
+        if (getTotalCandidates() <= maxCandidates) {
+            return this;
+        }
+        final int limitedSize = (int) Math.min(islandSize, maxCandidates / islands);
+        if (limitedSize < 2) {
+            throw new IllegalArgumentException("There isn't room for 2 candidates on each of " + islands + " islands");
+        }
+        return of(islands, limitedSize, migrationInterval, Math.min(migrants, limitedSize / 2));
+    }
+
+    /**
+     * Create a population for these options, seeded so the same seed always evolves the same way.
+     */
+    public Evolvable createPopulation(final long seed) {
+        return islands == 1 ? new Population(islandSize, seed) : new IslandPopulation(this, seed);
+    }
+
+    public int getIslands() {
+        return islands;
+    }
+
+    public int getIslandSize() {
+        return islandSize;
+    }
+
+    public int getMigrationInterval() {
+        return migrationInterval;
+    }
+
+    public int getMigrants() {
+        return migrants;
+    }
+
+    /**
+     * @return How many candidates there are across all of the islands.
+     */
+    public long getTotalCandidates() {
+        return (long) islands * islandSize;
+    }
+
+    @Override
+    public String toString() {
+        return islands + " x " + islandSize + " candidates, migrating " + migrants + " every " + migrationInterval
+                + " generations";
+    }
+}
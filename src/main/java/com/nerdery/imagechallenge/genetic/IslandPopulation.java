@@ -0,0 +1,74 @@
+package com.nerdery.imagechallenge.genetic;
+
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+/**
+ * Several populations that evolve side by side, each on its own worker, and every few generations send copies of
+ * their best candidates to the next island in a ring, where they replace the worst.
+ *
+ * Keeping the islands apart lets each one explore on its own instead of the whole population crowding around the
+ * first good candidate, and migration still spreads good candidates around. Each island is seeded from the run's
+ * seed in order and migration happens between generations, so a given seed always evolves the same way.
+ */
+public class IslandPopulation implements Evolvable {
+    private final IslandOptions options;
+    private final Population[] islands;
+    private int generation;
+
+    public IslandPopulation(final IslandOptions options, final long seed) {
+        this.options = options;
+        final SplittableRandom random = new SplittableRandom(seed);
+        islands = new Population[options.getIslands()];
+        for (int i = 0; i < islands.length; i++) {
+            islands[i] = new Population(options.getIslandSize(), random.nextLong());
+        }
+    }
+
+    @Override
+    public void resetPopulation(final int[] start, final int[] reference) {
+        Stream.of(islands).parallel().forEach(island -> island.resetPopulation(start, reference));
+        generation = 0;
+    }
+
+    @Override
+    public void generation() {
+        Stream.of(islands).parallel().forEach(Population::generation);
+        generation++;
+        if (options.getMigrants() > 0 && generation % options.getMigrationInterval() == 0) {
+            migrate();
+        }
+    }
+
+    /**
+     * Copy each island's best candidates over the next island's worst. The best and worst never overlap, since at most
+     * half an island migrates, so every island sends the candidates it had before any arrived.
+     */
+    private void migrate() {
+        final int migrants = options.getMigrants();
+        final Candidate[][] ranked = new Candidate[islands.length][];
+        for (int i = 0; i < islands.length; i++) {
+            ranked[i] = islands[i].rankedCandidates();
+        }
+
+        for (int i = 0; i < islands.length; i++) {
+            final Candidate[] from = ranked[i];
+            final Candidate[] to = ranked[(i + 1) % islands.length];
+            for (int m = 0; m < migrants; m++) {
+                to[to.length - 1 - m].copyFrom(from[m]);
+            }
+        }
+    }
+
+    @Override
+    public Candidate topScore() {
+        Candidate best = null;
+        for (final Population island : islands) {
+            final Candidate candidate = island.topScore();
+            if (best == null || candidate.getTotalScore() < best.getTotalScore()) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+}
@@ -1,30 +1,45 @@
 package com.nerdery.imagechallenge.genetic;
 
-import java.security.SecureRandom;
-import java.util.stream.IntStream;
+import java.util.SplittableRandom;
 
 public class Mutation {
-    private static final SecureRandom RANDOM = new SecureRandom();
     private static final double MUTATION_RATE = 0.01;
+    private static final double LOG_SURVIVAL_RATE = Math.log(1 - MUTATION_RATE);
 
     private Mutation() {}
 
-    public static void mutate(final Candidate candidate) {
-        IntStream.range(0, candidate.getSize()).forEach(i -> mutatePixel(i, candidate));
+    /**
+     * Give every pixel the mutation rate's chance of mutating. Rather than rolling for each pixel, this draws the gap
+     * to the next pixel that mutates from the matching geometric distribution, so the work is proportional to the
+     * number of mutations instead of the number of pixels.
+     *
+     * @param candidate The candidate.
+     * @param random The random stream to draw from.
+     */
+    public static void mutate(final Candidate candidate, final SplittableRandom random) {
+        for (long index = nextGap(random); index < candidate.getSize(); index += 1 + nextGap(random)) {
+            mutatePixel((int) index, candidate, random);
+        }
+    }
+
+    /**
+     * @return How many pixels to skip before the next one that mutates.
+     */
+    private static long nextGap(final SplittableRandom random) {
+        return (long) (Math.log(1 - random.nextDouble()) / LOG_SURVIVAL_RATE);
     }
 
     /**
-     * Attempt to mutate a specific pixel. Only non-perfect pixels may be mutated. The mutation rate controls the
-     * probability that the pixel will be mutated. Mutation is defined as random jitter.
+     * Mutate a specific pixel that has been picked for mutation. Only non-perfect pixels may be mutated. Mutation is
+     * defined as random jitter.
      *
      * @param index The pixel index.
      * @param candidate The candidate.
+     * @param random The random stream to draw from.
      */
-    private static void mutatePixel(final int index, final Candidate candidate) {
+    private static void mutatePixel(final int index, final Candidate candidate, final SplittableRandom random) {
         if (candidate.getScore(index) > 0) {
-            if (RANDOM.nextDouble() < MUTATION_RATE) {
-                candidate.setPixel(index, Colors.jitterPixelColors(candidate.getPixel(index)));
-            }
+            candidate.setPixel(index, Colors.jitterPixelColors(candidate.getPixel(index), random));
         }
     }
 }
@@ -1,23 +1,52 @@
 package com.nerdery.imagechallenge.genetic;
 
-import java.security.SecureRandom;
-import java.util.LinkedList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
-public class Population {
-    private static final SecureRandom RANDOM = new SecureRandom();
+/**
+ * A population of candidates that evolves one generation at a time.
+ *
+ * Scoring and breeding run in parallel. Every random draw comes from a {@link SplittableRandom} stream that is split
+ * off the seed in a fixed order on the calling thread - one per candidate when the population is reset, one per pair
+ * of children in each generation - so a given seed always evolves the same way, however many threads do the work.
+ *
+ * Candidates are stored back to back in one pixel array and one score array, with a slot for each candidate. A child
+ * usually takes over its parent's slot and is bred in place, and a parent that won several tournaments has its other
+ * children copied into the slots of candidates that won none. There are always exactly as many of those as there are
+ * extra children, so a generation needs no spare slots, and once the storage is allocated it allocates next to
+ * nothing.<p/>
+ *
+ * Each slot holds a 4-byte pixel and a 2-byte score for every pixel of the image, so a population takes
+ * {@link #BYTES_PER_PIXEL} bytes per pixel per candidate: about 12 MB per candidate at 1920x1080.
+ */
+public class Population implements Evolvable {
+    /**
+     * How many bytes a population needs per pixel per candidate: an int pixel and a short score.
+     */
+    public static final int BYTES_PER_PIXEL = Integer.BYTES + Short.BYTES;
+
     private static final int TOURNAMENT_SIZE = 4;
 
+    private final SplittableRandom random;
     private Candidate[] candidates;
     private int size;
 
-    public Population(final int size) {
+    public Population(final int size, final long seed) {
         this.size = size;
-        candidates = new Candidate[size];
+        this.random = new SplittableRandom(seed);
     }
 
+    @Override
     public Candidate topScore() {
         Candidate best = null;
         for (final Candidate candidate : candidates) {
@@ -34,43 +63,132 @@ public class Population {
         return best;
     }
 
-    public void resetPopulation(final int[] reference) {
-        IntStream.range(0, size).forEach(i -> candidates[i] = Candidate.fromReference(reference));
+    /**
+     * Start over with jittered copies of the starting data.
+     *
+     * @param start The data to start from.
+     * @param reference The reference data to evolve towards.
+     * @throws IllegalArgumentException If a generation of this many candidates of this size can't be stored in one
+     *                                  array.
+     */
+    @Override
+    public void resetPopulation(final int[] start, final int[] reference) {
+        if ((long) size * reference.length > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("A population of " + size + " candidates of " + reference.length
+                    + " pixels is too large");
+        }
+        candidates = allocate(reference);
+
+        final SplittableRandom[] streams = split(size);
+        IntStream.range(0, size).parallel().forEach(i -> candidates[i].reset(start, streams[i]));
     }
 
-    public void generation(final int[] reference) {
-        calculateAllScores(reference);
+    private Candidate[] allocate(final int[] reference) {
+        final int[] data = new int[size * reference.length];
+        final short[] scores = new short[size * reference.length];
+        final Candidate[] slots = new Candidate[size];
+        for (int slot = 0; slot < size; slot++) {
+            slots[slot] = new Candidate(data, scores, slot, reference);
+        }
+        return slots;
+    }
 
-        final LinkedList<Candidate> nextGeneration = new LinkedList<>();
+    /**
+     * Replace the candidates with children bred from tournament winners. Every tournament is held first, since they
+     * only look at the current scores. Then the first child of each winner takes over its slot, and any further
+     * children of the same winner - a strong candidate can win several tournaments in the same generation, even both
+     * of the same pair's - get a copy of it in the slot of a candidate that won nothing, made before anything is bred.
+     * Candidates keep their own scores up to date, so nothing is rescored here.
+     */
+    @Override
+    public void generation() {
+        final SplittableRandom[] streams = split(size / 2);
+
+        final Candidate[] parents = new Candidate[size];
+        for (int i = 0; i < size / 2; i++) {
+            parents[2 * i] = tournament(streams[i]);
+            parents[2 * i + 1] = tournament(streams[i]);
+        }
+        // an odd-sized population keeps its last candidate
+        if (size % 2 != 0) {
+            parents[size - 1] = candidates[size - 1];
+        }
+
+        final Set<Candidate> inherited = Collections.newSetFromMap(new IdentityHashMap<>());
+        final Candidate[] children = new Candidate[size];
+        for (int i = 0; i < size; i++) {
+            if (inherited.add(parents[i])) {
+                children[i] = parents[i];
+            }
+        }
+        // every child that didn't inherit a slot pairs off with a candidate that won nothing, whose slot is free
+        final Deque<Candidate> spares = new ArrayDeque<>();
+        for (final Candidate candidate : candidates) {
+            if (!inherited.contains(candidate)) {
+                spares.push(candidate);
+            }
+        }
+        final List<Integer> copies = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (children[i] == null) {
+                children[i] = spares.pop();
+                copies.add(i);
+            }
+        }
+        copies.parallelStream().forEach(i -> children[i].copyFrom(parents[i]));
 
-        IntStream.range(0, size / 2).forEach(i -> {
-            final Candidate c1 = tournament();
-            final Candidate c2 = tournament();
+        IntStream.range(0, size / 2).parallel().forEach(i -> {
+            final SplittableRandom pairRandom = streams[i];
+            final Candidate c1 = children[2 * i];
+            final Candidate c2 = children[2 * i + 1];
 
-            Crossover.attemptCrossover(c1, c2);
-            Mutation.mutate(c1);
-            Mutation.mutate(c2);
-            nextGeneration.add(c1);
-            nextGeneration.add(c2);
+            Crossover.attemptCrossover(c1, c2, pairRandom);
+            Mutation.mutate(c1, pairRandom);
+            Mutation.mutate(c2, pairRandom);
         });
 
-        nextGeneration.toArray(candidates);
+        candidates = children;
+    }
+
+    /**
+     * @return The candidates of the current generation, best first. Ties keep their slot order.
+     */
+    Candidate[] rankedCandidates() {
+        final Candidate[] ranked = Arrays.copyOf(candidates, size);
+        Arrays.sort(ranked, Comparator.comparingLong(Candidate::getTotalScore));
+        return ranked;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    private SplittableRandom[] split(final int count) {
+        final SplittableRandom[] streams = new SplittableRandom[count];
+        for (int i = 0; i < count; i++) {
+            streams[i] = random.split();
+        }
+        return streams;
     }
 
-    private Candidate selectRandomCandidate() {
-        return candidates[RANDOM.nextInt(size)];
+    private Candidate selectRandomCandidate(final SplittableRandom random) {
+        return candidates[random.nextInt(size)];
     }
 
-    private void calculateAllScores(final int[] reference) {
-        Stream.of(candidates).forEach(c -> c.calculateScore(reference));
+    /**
+     * Rescore every candidate from scratch. Only needed to check the incrementally kept scores, or to compare against
+     * them.
+     */
+    public void calculateAllScores() {
+        Stream.of(candidates).parallel().forEach(Candidate::calculateScore);
     }
 
-    private Candidate tournament() {
+    private Candidate tournament(final SplittableRandom random) {
         Candidate best = null;
         Candidate current;
 
         for (int i = 0; i < TOURNAMENT_SIZE; i++) {
-            current = selectRandomCandidate();
+            current = selectRandomCandidate(random);
             if (best == null) {
                 best = current;
             }
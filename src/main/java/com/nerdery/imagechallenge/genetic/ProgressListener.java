@@ -0,0 +1,20 @@
+package com.nerdery.imagechallenge.genetic;
+
+/**
+ * Hears about an evolution run as it goes.
+ */
+@FunctionalInterface
+public interface ProgressListener {
+    ProgressListener NONE = (generation, best, elapsedMillis) -> true;
+
+    /**
+     * Called between generations, on the thread running the evolution. The candidate must not be changed, and
+     * is only valid until the listener returns, since its storage is reused by the next generation.
+     *
+     * @param generation How many generations have completed.
+     * @param best The best candidate so far.
+     * @param elapsedMillis How long the run has taken so far.
+     * @return Whether to keep going.
+     */
+    boolean onProgress(int generation, Candidate best, long elapsedMillis);
+}
@@ -0,0 +1,67 @@
+package com.nerdery.imagechallenge.genetic;
+
+/**
+ * When an evolution run should stop: after a number of generations, after a wall-clock budget, once the best score
+ * reaches a target, or once the best score stops improving.
+ */
+public class StoppingCriteria {
+    private final int maxGenerations;
+    private final long timeBudgetMillis;
+    private final long targetScore;
+    private final int plateauGenerations;
+    private final double plateauImprovement;
+
+    /**
+     * @param maxGenerations The most generations to run.
+     * @param timeBudgetMillis The most time to spend, or 0 for no limit.
+     * @param targetScore Stop once the best score is at or below this. Scores can't go below 0, which is a perfect
+     *                    match.
+     * @param plateauGenerations Stop if the best score hasn't improved enough in this many generations, or 0 to never
+     *                           stop for a plateau.
+     * @param plateauImprovement The fraction by which the best score has to improve within the plateau window to keep
+     *                           going.
+     */
+    public StoppingCriteria(final int maxGenerations, final long timeBudgetMillis, final long targetScore,
+                            final int plateauGenerations, final double plateauImprovement) {
+        this.maxGenerations = maxGenerations;
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.targetScore = targetScore;
+        this.plateauGenerations = plateauGenerations;
+        this.plateauImprovement = plateauImprovement;
+    }
+
+    /**
+     * @return These criteria with the time budget cut down to the given one, if that is tighter.
+     */
+    public StoppingCriteria withTimeBudget(final long budgetMillis) {
+        final long budget = timeBudgetMillis > 0 ? Math.min(timeBudgetMillis, budgetMillis) : budgetMillis;
+        return new StoppingCriteria(maxGenerations, budget, targetScore, plateauGenerations, plateauImprovement);
+    }
+
+    /**
+     * @return These criteria with a different target score.
+     */
+    public StoppingCriteria withTargetScore(final long score) {
+        return new StoppingCriteria(maxGenerations, timeBudgetMillis, score, plateauGenerations, plateauImprovement);
+    }
+
+    public int getMaxGenerations() {
+        return maxGenerations;
+    }
+
+    public long getTimeBudgetMillis() {
+        return timeBudgetMillis;
+    }
+
+    public long getTargetScore() {
+        return targetScore;
+    }
+
+    public int getPlateauGenerations() {
+        return plateauGenerations;
+    }
+
+    public double getPlateauImprovement() {
+        return plateauImprovement;
+    }
+}
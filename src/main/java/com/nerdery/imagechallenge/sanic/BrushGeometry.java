@@ -0,0 +1,84 @@
+package com.nerdery.imagechallenge.sanic;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * The circular brush of a given radius, described both as the list of offsets it covers and as {@link CircleSpans},
+ * and as the slightly smaller brush of offsets strictly inside the radius that
+ * {@link com.nerdery.imagechallenge.services.filters.revans.FasterOilPaintFilter} paints with.
+ * <p/>
+ *
+ * Both only depend on the radius, so they are built once per radius and shared by every request that uses it. The
+ * radii requests can ask for are bounded, so the cache is too.
+ */
+public class BrushGeometry {
+    private static final LoadingCache<Integer, BrushGeometry> BRUSHES = CacheBuilder.newBuilder()
+            .build(CacheLoader.from(BrushGeometry::new));
+
+    private final int radius;
+    private final List<Vertex> radialOffsets;
+    private final CircleSpans circleSpans;
+    private final int[] interiorOffsets;
+
+    private BrushGeometry(final int radius) {
+        this.radius = radius;
+        final List<Vertex> offsets = new ArrayList<>();
+        for (int y = -radius; y <= radius; y++) {
+            for (int x = -radius; x <= radius; x++) {
+                final Vertex v = new Vertex(x, y);
+                if (v.length() <= radius) {
+                    offsets.add(v);
+                }
+            }
+        }
+        radialOffsets = Collections.unmodifiableList(offsets);
+        circleSpans = new CircleSpans(radius);
+        interiorOffsets = createInteriorOffsets(radius);
+    }
+
+    private static int[] createInteriorOffsets(final int radius) {
+        final IntStream.Builder offsets = IntStream.builder();
+        for (int dX = -radius; dX < radius; dX++) {
+            for (int dY = -radius; dY < radius; dY++) {
+                if (dX * dX + dY * dY < radius * radius) {
+                    offsets.add(dX).add(dY);
+                }
+            }
+        }
+        return offsets.build().toArray();
+    }
+
+    public static BrushGeometry of(final int radius) {
+        return BRUSHES.getUnchecked(radius);
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * @return Every offset within the radius, row by row from the top left.
+     */
+    public List<Vertex> getRadialOffsets() {
+        return radialOffsets;
+    }
+
+    public CircleSpans getCircleSpans() {
+        return circleSpans;
+    }
+
+    /**
+     * @return Every offset strictly inside the radius, as dX, dY pairs, column by column from the top left. The array
+     * is shared, so callers must not modify it.
+     */
+    public int[] getInteriorOffsets() {
+        return interiorOffsets;
+    }
+}
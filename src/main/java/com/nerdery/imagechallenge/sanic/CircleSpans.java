@@ -0,0 +1,37 @@
+package com.nerdery.imagechallenge.sanic;
+
+/**
+ * Describes the circular brush as one horizontal span per row: for a row offset <code>dy</code> the brush covers
+ * every column offset from <code>-halfWidth(dy)</code> to <code>halfWidth(dy)</code>.<p/>
+ *
+ * The spans are derived with the same {@link Vertex#length()} test used for the radial offsets, so the two
+ * descriptions of the brush always cover exactly the same pixels.
+ */
+public class CircleSpans {
+    private final int radius;
+    private final int[] halfWidths;
+
+    public CircleSpans(final int radius) {
+        this.radius = radius;
+        halfWidths = new int[2 * radius + 1];
+        for (int y = -radius; y <= radius; y++) {
+            int halfWidth = 0;
+            while (halfWidth < radius && new Vertex(halfWidth + 1, y).length() <= radius) {
+                halfWidth++;
+            }
+            halfWidths[y + radius] = halfWidth;
+        }
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * @param dy The row offset from the center of the brush, from <code>-radius</code> to <code>radius</code>.
+     * @return The largest column offset covered by the brush on that row.
+     */
+    public int halfWidth(final int dy) {
+        return halfWidths[dy + radius];
+    }
+}
@@ -0,0 +1,44 @@
+package com.nerdery.imagechallenge.sanic;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * Maps a color to its intensity level, from 0 to the highest level: the average of the channels scaled to the levels,
+ * rounding down. The level only depends on the sum of the channels, so it is looked up from a table built once for
+ * each number of levels.
+ */
+public class IntensityLevels {
+    private static final int MAX_CHANNEL_SUM = 3 * 255;
+    private static final LoadingCache<Integer, IntensityLevels> TABLES = CacheBuilder.newBuilder()
+            .build(CacheLoader.from(IntensityLevels::new));
+
+    private final int levels;
+    private final int[] table = new int[MAX_CHANNEL_SUM + 1];
+
+    private IntensityLevels(final int levels) {
+        this.levels = levels;
+        for (int sum = 0; sum <= MAX_CHANNEL_SUM; sum++) {
+            table[sum] = ((sum / 3) * levels) / 255;
+        }
+    }
+
+    /**
+     * @param levels The highest level, which fully white pixels are on.
+     */
+    public static IntensityLevels of(final int levels) {
+        return TABLES.getUnchecked(levels);
+    }
+
+    /**
+     * @return The highest level.
+     */
+    public int getLevels() {
+        return levels;
+    }
+
+    public int level(final int red, final int green, final int blue) {
+        return table[red + green + blue];
+    }
+}
@@ -0,0 +1,68 @@
+package com.nerdery.imagechallenge.sanic;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out output buffers to individual requests. Buffers are grouped into power-of-two size classes so a released
+ * buffer can be reused by any later request of a similar size, and only a few buffers per class are kept around.
+ */
+public class SanicBufferPool {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SanicBufferPool.class);
+    private static final int MAX_SIZE_CLASS = 1 << 30;
+
+    private final ConcurrentMap<Integer, Queue<int[]>> available = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, AtomicInteger> retained = new ConcurrentHashMap<>();
+    private final int maxRetainedPerClass;
+
+    public SanicBufferPool(final int maxRetainedPerClass) {
+        this.maxRetainedPerClass = maxRetainedPerClass;
+    }
+
+    /**
+     * Lease a buffer holding at least the given number of elements. The buffer may be larger than requested and its
+     * contents are undefined. It must be handed back with {@link #release(int[])} once the caller is done with it.
+     */
+    public int[] lease(final int minimumSize) {
+        if (minimumSize > MAX_SIZE_CLASS) {
+            // too big to round up to a power of two; these are never pooled
+            return new int[minimumSize];
+        }
+
+        final int sizeClass = sizeClass(minimumSize);
+        final Queue<int[]> queue = available.get(sizeClass);
+        final int[] buffer = queue == null ? null : queue.poll();
+        if (buffer != null) {
+            retained.get(sizeClass).decrementAndGet();
+            return buffer;
+        }
+
+        LOGGER.debug("Allocating a new Sanic buffer with {} elements", sizeClass);
+        return new int[sizeClass];
+    }
+
+    public void release(final int[] buffer) {
+        final int sizeClass = buffer.length;
+        if (Integer.bitCount(sizeClass) != 1) {
+            return;
+        }
+
+        final AtomicInteger count = retained.computeIfAbsent(sizeClass, c -> new AtomicInteger());
+        if (count.incrementAndGet() > maxRetainedPerClass) {
+            count.decrementAndGet();
+            return;
+        }
+        available.computeIfAbsent(sizeClass, c -> new ConcurrentLinkedQueue<>()).offer(buffer);
+    }
+
+    private static int sizeClass(final int minimumSize) {
+        final int highest = Integer.highestOneBit(Math.max(1, minimumSize));
+        return highest == minimumSize ? highest : highest << 1;
+    }
+}
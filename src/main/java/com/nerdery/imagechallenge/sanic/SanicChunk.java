@@ -5,11 +5,13 @@ import java.awt.image.Raster;
 public class SanicChunk {
     private int sourceWidth;
     private int sourceHeight;
+    private int bands;
     private int beginRowInclusive;
     private int endRowInclusive;
     private int beginBufferInclusive;
     private int endBufferInclusive;
     private Raster raster;
+    private int[] buffer;
 
     public int getSourceWidth() {
         return sourceWidth;
@@ -27,6 +29,14 @@ public class SanicChunk {
         this.sourceHeight = sourceHeight;
     }
 
+    public int getBands() {
+        return bands;
+    }
+
+    public void setBands(int bands) {
+        this.bands = bands;
+    }
+
     public int getBeginRowInclusive() {
         return beginRowInclusive;
     }
@@ -66,4 +76,12 @@ public class SanicChunk {
     public void setRaster(Raster raster) {
         this.raster = raster;
     }
+
+    public int[] getBuffer() {
+        return buffer;
+    }
+
+    public void setBuffer(int[] buffer) {
+        this.buffer = buffer;
+    }
 }
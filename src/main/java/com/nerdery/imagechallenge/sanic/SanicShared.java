@@ -1,42 +1,38 @@
 package com.nerdery.imagechallenge.sanic;
 
+import com.nerdery.imagechallenge.services.filters.FilterParameter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.env.Environment;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class SanicShared {
     private static final Logger LOGGER = LoggerFactory.getLogger(SanicShared.class);
+    private static final int MAX_RADIUS = 32;
+    private static final int MAX_LEVELS = 255;
 
     private Environment environment;
-    private int bufferWidth = 800;
-    private int bufferHeight = 600;
-    private int bufferChannels = 3;
-    private int bufferSize;
-    private int[] buffer;
+    private SanicBufferPool bufferPool;
     private int poolSize;
     private int radius = 6;
     private int levels = 8;
-    private final List<Vertex> radialOffsets = new ArrayList<>();
+    private FilterParameter radiusParameter;
+    private FilterParameter levelsParameter;
     private int rowCount = 64;
 
     public SanicShared(final Environment environment) {
         this.environment = environment;
-        bufferWidth = getInt("sanic.buffer.width");
-        bufferHeight = getInt("sanic.buffer.height");
-        bufferSize = bufferWidth * bufferHeight * bufferChannels;
-
-        LOGGER.info("Initializing Sanic buffer with {} width, {} height, and {} color channels", bufferWidth, bufferHeight, bufferChannels);
-        buffer = new int[bufferWidth * bufferHeight * bufferChannels];
+        bufferPool = new SanicBufferPool(getInt("sanic.buffer.retained"));
 
         poolSize = getInt("sanic.pool.size");
 
         radius = getInt("sanic.filter.radius");
         levels = getInt("sanic.filter.levels");
-        calculateRadialOffsets();
-        LOGGER.info("Initializing Sanic filter with radius {} and {} levels. Filter using {} radial offsets.", radius, levels, radialOffsets.size());
+        // the configured values are the defaults; requests can pick others within these bounds
+        radiusParameter = FilterParameter.ofInt("radius", 1, MAX_RADIUS, radius);
+        levelsParameter = FilterParameter.ofInt("levels", 1, MAX_LEVELS, levels);
+        LOGGER.info("Initializing Sanic filter with radius {} and {} levels. Filter using {} radial offsets.", radius, levels, getRadialOffsets().size());
 
         rowCount = getInt("sanic.filter.row.count");
     }
@@ -45,56 +41,8 @@ public class SanicShared {
         return environment.getProperty(property, Integer.class);
     }
 
-    private void calculateRadialOffsets() {
-        radialOffsets.clear();
-        for (int y = -radius; y <= radius; y++) {
-            for (int x = -radius; x <= radius; x++) {
-                final Vertex v = new Vertex(x, y);
-                if (v.length() <= radius) {
-                    radialOffsets.add(v);
-                }
-            }
-        }
-    }
-
-    public int getBufferWidth() {
-        return bufferWidth;
-    }
-
-    public void setBufferWidth(int bufferWidth) {
-        this.bufferWidth = bufferWidth;
-    }
-
-    public int getBufferHeight() {
-        return bufferHeight;
-    }
-
-    public void setBufferHeight(int bufferHeight) {
-        this.bufferHeight = bufferHeight;
-    }
-
-    public int getBufferChannels() {
-        return bufferChannels;
-    }
-
-    public void setBufferChannels(int bufferChannels) {
-        this.bufferChannels = bufferChannels;
-    }
-
-    public int getBufferSize() {
-        return bufferSize;
-    }
-
-    public void setBufferSize(int bufferSize) {
-        this.bufferSize = bufferSize;
-    }
-
-    public int[] getBuffer() {
-        return buffer;
-    }
-
-    public void setBuffer(int[] buffer) {
-        this.buffer = buffer;
+    public SanicBufferPool getBufferPool() {
+        return bufferPool;
     }
 
     public int getPoolSize() {
@@ -122,7 +70,19 @@ public class SanicShared {
     }
 
     public List<Vertex> getRadialOffsets() {
-        return radialOffsets;
+        return BrushGeometry.of(radius).getRadialOffsets();
+    }
+
+    public CircleSpans getCircleSpans() {
+        return BrushGeometry.of(radius).getCircleSpans();
+    }
+
+    public FilterParameter getRadiusParameter() {
+        return radiusParameter;
+    }
+
+    public FilterParameter getLevelsParameter() {
+        return levelsParameter;
     }
 
     public int getRowCount() {
@@ -4,23 +4,26 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.awt.image.Raster;
+import java.util.List;
 import java.util.concurrent.Callable;
 
 public class SanicTask implements Callable<Void> {
     private static final Logger LOGGER = LoggerFactory.getLogger(SanicTask.class);
     private final SanicChunk chunk;
-    private final SanicShared config;
+    private final BrushGeometry brush;
+    private final IntensityLevels intensityLevels;
 
-    public SanicTask(final SanicChunk chunk, final SanicShared config) {
+    public SanicTask(final SanicChunk chunk, final BrushGeometry brush, final IntensityLevels intensityLevels) {
         this.chunk = chunk;
-        this.config = config;
+        this.brush = brush;
+        this.intensityLevels = intensityLevels;
     }
 
     @Override
     public Void call() {
         try {
-            final int[] sourceColor = new int[3];
-            final IntensityBucket[] buckets = new IntensityBucket[config.getLevels() + 1];
+            final int[] sourceColor = new int[chunk.getBands()];
+            final IntensityBucket[] buckets = new IntensityBucket[intensityLevels.getLevels() + 1];
             for (int i = 0; i < buckets.length; i++) {
                 buckets[i] = new IntensityBucket();
             }
@@ -31,6 +34,9 @@ public class SanicTask implements Callable<Void> {
             final int sourceWidth = chunk.getSourceWidth();
             final int sourceHeight = chunk.getSourceHeight();
             final Raster raster = chunk.getRaster();
+            final int bands = chunk.getBands();
+            final int[] buffer = chunk.getBuffer();
+            final List<Vertex> radialOffsets = brush.getRadialOffsets();
 
             int bufferIndex = chunk.getBeginBufferInclusive();
             final long beginTask = System.nanoTime();
@@ -40,29 +46,36 @@ public class SanicTask implements Callable<Void> {
                     break;
                 }
 
+                // The request that owns this chunk has given up on it.
+                if (Thread.currentThread().isInterrupted()) {
+                    return null;
+                }
+
                 for (int x = 0; x < chunk.getSourceWidth(); x++) {
                     zeroBuckets(buckets);
 
                     final int X = x;
                     final int Y = y;
-                    config.getRadialOffsets().forEach(v -> {
+                    radialOffsets.forEach(v -> {
                         final int px = X + v.x;
                         final int py = Y + v.y;
 
                         // If the selected offset is in bounds, merge the pixel into the appropriate bucket.
                         if (isInBounds(px, py, sourceWidth, sourceHeight)) {
                             raster.getPixel(px, py, sourceColor);
-                            // Yes, we recalculate this a lot, but it turns out that caching the results does not help
-                            // increase the speed (I tried two different ways).
-                            buckets[calculateIntensity(sourceColor)].merge(sourceColor);
+                            buckets[intensityLevels.level(sourceColor[0], sourceColor[1], sourceColor[2])].merge(sourceColor);
                         }
                     });
 
                     final IntensityBucket bucket = biggestBucket(buckets);
-                    config.getBuffer()[bufferIndex] = bucket.averageRed();
-                    config.getBuffer()[bufferIndex + 1] = bucket.averageGreen();
-                    config.getBuffer()[bufferIndex + 2] = bucket.averageBlue();
-                    bufferIndex += 3;
+                    buffer[bufferIndex] = bucket.averageRed();
+                    buffer[bufferIndex + 1] = bucket.averageGreen();
+                    buffer[bufferIndex + 2] = bucket.averageBlue();
+                    // Any remaining bands (alpha) are carried over from the source pixel untouched.
+                    for (int band = 3; band < bands; band++) {
+                        buffer[bufferIndex + band] = raster.getSample(x, y, band);
+                    }
+                    bufferIndex += bands;
                 }
             }
 
@@ -91,10 +104,6 @@ public class SanicTask implements Callable<Void> {
         return x >= 0 && x < sourceWidth && y >= 0 && y < sourceHeight;
     }
 
-    private int calculateIntensity(int[] color) {
-        return (((color[0] + color[1] + color[2]) / 3) * config.getLevels()) / 255;
-    }
-
     private void zeroBuckets(final IntensityBucket[] buckets) {
         for (IntensityBucket bucket : buckets) {
             bucket.clear();
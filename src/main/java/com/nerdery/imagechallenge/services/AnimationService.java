@@ -0,0 +1,131 @@
+package com.nerdery.imagechallenge.services;
+
+import com.nerdery.imagechallenge.services.filters.FilterParameters;
+import com.nerdery.imagechallenge.services.filters.RippleFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.inject.Inject;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Renders animations of the ripple filter, with the ripples travelling outwards through one wavelength so the
+ * animation loops smoothly.<p/>
+ *
+ * Frames are rendered in parallel on the {@link FilterExecutor} and handed to the GIF encoder in order, so encoding
+ * one frame overlaps with rendering the next few. Only a small window of frames is rendered ahead of the encoder, so
+ * memory use depends on the window rather than the length of the animation.
+ */
+@Service
+public class AnimationService {
+
+    private int window;
+    private FilterExecutor filterExecutor;
+    private ImageEncoder imageEncoder;
+    private RippleFilter rippleFilter;
+
+    /**
+     * Start rendering the first frames of a ripple animation.
+     *
+     * @param parameters The ripple filter's parameters.
+     * @throws RejectedExecutionException If the filter queue is too full to take the first frame.
+     */
+    public Animation startRipple(BufferedImage sourceImage, FilterParameters parameters, int frames) {
+        return new Animation(sourceImage, parameters, frames);
+    }
+
+    /**
+     * An animation whose frames are being rendered, ready to be written out once.
+     */
+    public class Animation implements Iterator<BufferedImage> {
+        private final BufferedImage sourceImage;
+        private final FilterParameters parameters;
+        private final int frames;
+        private final Deque<CompletableFuture<BufferedImage>> rendering = new ArrayDeque<>();
+        private int submitted;
+        private int written;
+
+        private Animation(BufferedImage sourceImage, FilterParameters parameters, int frames) {
+            this.sourceImage = sourceImage;
+            this.parameters = parameters;
+            this.frames = frames;
+            rendering.add(filterExecutor.submit(() -> renderFrame(0)));
+            submitted = 1;
+        }
+
+        /**
+         * Encode the animation as a looping GIF, showing each frame for the given time.
+         */
+        public void writeGif(int delayMillis, OutputStream out) throws IOException {
+            try {
+                fillWindow();
+                imageEncoder.encodeAnimation(this, delayMillis, out);
+            } finally {
+                rendering.forEach(frame -> frame.cancel(false));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return written < frames;
+        }
+
+        @Override
+        public BufferedImage next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            BufferedImage frame = rendering.remove().join();
+            written++;
+            fillWindow();
+            return frame;
+        }
+
+        /**
+         * Keep the window full. Once the animation has started, a full filter queue shouldn't fail it half way
+         * through, so frames the queue won't take are rendered right here instead.
+         */
+        private void fillWindow() {
+            while (rendering.size() < window && submitted < frames) {
+                final int index = submitted++;
+                try {
+                    rendering.add(filterExecutor.submit(() -> renderFrame(index)));
+                } catch (RejectedExecutionException e) {
+                    rendering.add(CompletableFuture.completedFuture(renderFrame(index)));
+                }
+            }
+        }
+
+        private BufferedImage renderFrame(int index) {
+            return rippleFilter.transform(sourceImage, parameters, 2 * Math.PI * index / frames);
+        }
+    }
+
+    @Inject
+    public void setWindow(@Value("${imagechallenge.animation.window}") int window) {
+        this.window = window;
+    }
+
+    @Inject
+    public void setFilterExecutor(FilterExecutor filterExecutor) {
+        this.filterExecutor = filterExecutor;
+    }
+
+    @Inject
+    public void setImageEncoder(ImageEncoder imageEncoder) {
+        this.imageEncoder = imageEncoder;
+    }
+
+    @Inject
+    public void setRippleFilter(RippleFilter rippleFilter) {
+        this.rippleFilter = rippleFilter;
+    }
+}
@@ -1,39 +1,148 @@
 package com.nerdery.imagechallenge.services;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.nerdery.imagechallenge.services.filters.FilterResult;
+import com.nerdery.imagechallenge.services.filters.StageTime;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.SampleModel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
 
 /**
+ * Draws the source image above the filtered image, separated by a line and captioned with the filter timings.<p/>
+ *
+ * The font and its line height are worked out once at startup rather than per request. Composites handed out
+ * by {@link #leaseComposite(BufferedImage, FilterResult)} are drawn into recycled buffers of the same size and type,
+ * which saves allocating and clearing an image twice the size of the source on every request. The pools are bounded
+ * by the bytes their buffers could hold, and the least recently used shapes are dropped first, so a stream of
+ * differently sized uploads can't pile up idle buffers.
+ *
  * @author Josh Klun (jklun@nerdery.com)
  */
 @Service
 public class CompositeService {
 
+    private Cache<List<Integer>, BlockingQueue<BufferedImage>> idleBuffers;
     private Color separatorColor;
     private Color textColor;
     private String fontName;
     private int fontSize;
+    private Font font;
+    private int lineHeight;
+    private int maxIdlePerShape = 1;
+    private long maxIdleBytes;
 
     public BufferedImage buildComposite(BufferedImage sourceImage, FilterResult targetImageResult) {
+        BufferedImage finalImage = new BufferedImage(sourceImage.getWidth(), sourceImage.getHeight() * 2 + 1, sourceImage.getType());
+        drawComposite(sourceImage, targetImageResult, finalImage);
+        return finalImage;
+    }
+
+    /**
+     * Build the composite in a recycled buffer. The caller must hand the buffer back with
+     * {@link #releaseComposite(BufferedImage)} once it is done with it, and must not touch it afterwards.
+     */
+    public BufferedImage leaseComposite(BufferedImage sourceImage, FilterResult targetImageResult) {
+        BufferedImage finalImage = pool(shapeOf(sourceImage)).poll();
+        if (finalImage == null) {
+            return buildComposite(sourceImage, targetImageResult);
+        }
+        drawComposite(sourceImage, targetImageResult, finalImage);
+        return finalImage;
+    }
+
+    public void releaseComposite(BufferedImage composite) {
+        List<Integer> shape = Arrays.asList(composite.getWidth(), (composite.getHeight() - 1) / 2, composite.getType(),
+                bytesPerPixel(composite));
+        pool(shape).offer(composite);
+    }
+
+    private void drawComposite(BufferedImage sourceImage, FilterResult targetImageResult, BufferedImage finalImage) {
         int sourceHeight = sourceImage.getHeight();
         int sourceWidth = sourceImage.getWidth();
-        BufferedImage finalImage = new BufferedImage(sourceWidth, sourceHeight * 2 + 1, sourceImage.getType());
-        Graphics graphics = finalImage.getGraphics();
-        graphics.drawImage(sourceImage, 0, 0, null);
-        graphics.setColor(separatorColor);
-        graphics.drawLine(0, sourceHeight, sourceWidth, sourceHeight);
-        graphics.drawImage(targetImageResult.getOutputImage(), 0, sourceHeight + 1, null);
-        char[] milliSecondsString = (targetImageResult.getResultTime().toString() + " ms").toCharArray();
-        graphics.setColor(textColor);
-        graphics.setFont(new Font(fontName, Font.PLAIN, fontSize));
-        int margin = graphics.getFontMetrics().getHeight();
-        graphics.drawChars(milliSecondsString, 0 , milliSecondsString.length, margin, 2 * margin);
-        return finalImage;
+        BufferedImage outputImage = targetImageResult.getOutputImage();
+        Graphics2D graphics = finalImage.createGraphics();
+        try {
+            // recycled buffers still hold the previous composite, so replace pixels instead of blending over them
+            graphics.setComposite(AlphaComposite.Src);
+            if (outputImage.getWidth() != sourceWidth || outputImage.getHeight() != sourceHeight) {
+                graphics.setColor(new Color(0, true));
+                graphics.fillRect(0, sourceHeight + 1, sourceWidth, sourceHeight);
+            }
+            graphics.drawImage(sourceImage, 0, 0, null);
+            graphics.setColor(separatorColor);
+            graphics.drawLine(0, sourceHeight, sourceWidth, sourceHeight);
+            graphics.drawImage(outputImage, 0, sourceHeight + 1, null);
+
+            graphics.setComposite(AlphaComposite.SrcOver);
+            graphics.setColor(textColor);
+            graphics.setFont(font);
+            char[] milliSecondsString = (targetImageResult.getResultTime().toString() + " ms").toCharArray();
+            graphics.drawChars(milliSecondsString, 0, milliSecondsString.length, lineHeight, 2 * lineHeight);
+
+            // pipelines also list how long each stage took
+            List<StageTime> stageTimes = targetImageResult.getStageTimes();
+            for (int i = 0; stageTimes.size() > 1 && i < stageTimes.size(); i++) {
+                StageTime stageTime = stageTimes.get(i);
+                char[] stageString = (stageTime.getStageName() + ": " + stageTime.getResultTime() + " ms").toCharArray();
+                graphics.drawChars(stageString, 0, stageString.length, lineHeight, (3 + i) * lineHeight);
+            }
+        } finally {
+            graphics.dispose();
+        }
+    }
+
+    private static List<Integer> shapeOf(BufferedImage sourceImage) {
+        return Arrays.asList(sourceImage.getWidth(), sourceImage.getHeight(), sourceImage.getType(),
+                bytesPerPixel(sourceImage));
+    }
+
+    private static int bytesPerPixel(BufferedImage image) {
+        SampleModel sampleModel = image.getSampleModel();
+        return Math.max(1, sampleModel.getNumDataElements() * DataBuffer.getDataTypeSize(sampleModel.getDataType()) / 8);
+    }
+
+    private BlockingQueue<BufferedImage> pool(List<Integer> shape) {
+        try {
+            return idleBuffers.get(shape, () -> new ArrayBlockingQueue<>(maxIdlePerShape));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw new IllegalStateException("Unable to create a buffer pool", e.getCause());
+        }
+    }
+
+    /**
+     * Work out the font and set up the buffer pools once every property is set. The container calls this; anything
+     * that builds the service by hand has to call it after the setters.
+     */
+    @PostConstruct
+    public void configure() {
+        font = new Font(fontName, Font.PLAIN, fontSize);
+        Graphics2D graphics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics();
+        try {
+            lineHeight = graphics.getFontMetrics(font).getHeight();
+        } finally {
+            graphics.dispose();
+        }
+
+        // a pool is weighed as if it were full, since that is what it may come to hold
+        int perShape = maxIdlePerShape;
+        idleBuffers = CacheBuilder.newBuilder()
+                .maximumWeight(maxIdleBytes)
+                .<List<Integer>, BlockingQueue<BufferedImage>>weigher((shape, pool) -> (int) Math.min(Integer.MAX_VALUE,
+                        (long) perShape * shape.get(0) * (shape.get(1) * 2L + 1) * shape.get(3)))
+                .build();
     }
 
     @Inject
@@ -55,4 +164,14 @@ public class CompositeService {
     public void setFontSize(@Value("${imagechallenge.fontsize}")int fontSize) {
         this.fontSize = fontSize;
     }
+
+    @Inject
+    public void setMaxIdlePerShape(@Value("${imagechallenge.composite.pooled}") int maxIdlePerShape) {
+        this.maxIdlePerShape = maxIdlePerShape;
+    }
+
+    @Inject
+    public void setMaxIdleBytes(@Value("${imagechallenge.composite.maxbytes}") long maxIdleBytes) {
+        this.maxIdleBytes = maxIdleBytes;
+    }
 }
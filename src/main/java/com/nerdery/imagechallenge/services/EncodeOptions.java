@@ -0,0 +1,102 @@
+package com.nerdery.imagechallenge.services;
+
+import com.google.common.collect.ImmutableMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Per-request encoder settings: JPEG quality (1 to 100) and PNG compression level (0 to 9, like zlib). Anything left
+ * unset uses the encoder's default.<p/>
+ *
+ * The PNG compression level is only accepted where the runtime's PNG encoder supports one, which is Java 9 and later;
+ * the Java 8 encoder has a fixed level, so asking for one there is refused rather than ignored.
+ */
+public class EncodeOptions {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EncodeOptions.class);
+    public static final EncodeOptions DEFAULT = new EncodeOptions(null, null);
+
+    private static final String JPEG = "jpeg";
+    private static final String PNG = "png";
+    private static final int MAX_COMPRESSION = 9;
+    private static final boolean PNG_COMPRESSION_SUPPORTED = supportsCompression(PNG);
+
+    private final Integer quality;
+    private final Integer compression;
+
+    private EncodeOptions(Integer quality, Integer compression) {
+        this.quality = quality;
+        this.compression = compression;
+    }
+
+    /**
+     * @throws IllegalArgumentException If an option is out of range or doesn't apply to the format.
+     */
+    public static EncodeOptions of(String format, Integer quality, Integer compression) {
+        if (quality != null && (!JPEG.equals(format) || quality < 1 || quality > 100)) {
+            throw new IllegalArgumentException("quality must be between 1 and 100 and only applies to " + JPEG);
+        }
+        if (compression != null && (!PNG.equals(format) || compression < 0 || compression > MAX_COMPRESSION)) {
+            throw new IllegalArgumentException("compression must be between 0 and " + MAX_COMPRESSION + " and only applies to " + PNG);
+        }
+        if (compression != null && !PNG_COMPRESSION_SUPPORTED) {
+            throw new IllegalArgumentException("compression isn't supported by this server's " + PNG + " encoder");
+        }
+        return quality == null && compression == null ? DEFAULT : new EncodeOptions(quality, compression);
+    }
+
+    /**
+     * @return The options as result cache key parameters.
+     */
+    public Map<String, String> toParameters() {
+        ImmutableMap.Builder<String, String> parameters = ImmutableMap.builder();
+        if (quality != null) {
+            parameters.put("quality", quality.toString());
+        }
+        if (compression != null) {
+            parameters.put("compression", compression.toString());
+        }
+        return parameters.build();
+    }
+
+    private static boolean supportsCompression(String format) {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            return false;
+        }
+        ImageWriter writer = writers.next();
+        try {
+            return writer.getDefaultWriteParam().canWriteCompressed();
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    ImageWriteParam createWriteParam(ImageWriter writer) {
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (quality == null && compression == null) {
+            return param;
+        }
+        if (!param.canWriteCompressed()) {
+            LOGGER.debug("{} doesn't support compression settings; using its defaults", writer.getOriginatingProvider().getDescription(null));
+            return param;
+        }
+
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        if (param.getCompressionType() == null && param.getCompressionTypes() != null) {
+            param.setCompressionType(param.getCompressionTypes()[0]);
+        }
+        if (quality != null) {
+            param.setCompressionQuality(quality / 100f);
+        } else {
+            // the PNG encoder maps quality 1.0 to no compression and 0.0 to the highest level
+            param.setCompressionQuality(1f - compression / (float) MAX_COMPRESSION);
+        }
+        return param;
+    }
+}
@@ -0,0 +1,34 @@
+package com.nerdery.imagechallenge.services;
+
+import com.nerdery.imagechallenge.services.filters.FilterResult;
+import com.nerdery.imagechallenge.services.filters.StageTime;
+
+import java.util.List;
+
+/**
+ * An encoded response image, together with the timings of the filter run that produced it so they can still be
+ * reported when the bytes come out of the cache.
+ */
+public class EncodedImage {
+    private final byte[] bytes;
+    private final long elapsedNanos;
+    private final List<StageTime> stageTimes;
+
+    public EncodedImage(byte[] bytes, FilterResult filterResult) {
+        this.bytes = bytes;
+        this.elapsedNanos = filterResult.getElapsedNanos();
+        this.stageTimes = filterResult.getStageTimes();
+    }
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public List<StageTime> getStageTimes() {
+        return stageTimes;
+    }
+}
@@ -0,0 +1,116 @@
+package com.nerdery.imagechallenge.services;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs filter work off the servlet container's threads.<p/>
+ *
+ * The pool has a fixed number of threads and a bounded queue. Once the queue is full new work is refused straight
+ * away with a {@link RejectedExecutionException} instead of piling up, so a burst of slow filters can't hold every
+ * container thread and cheap requests keep being answered. Cached results are sent from the container thread without
+ * coming here.
+ */
+@Service
+public class FilterExecutor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FilterExecutor.class);
+
+    private final AtomicLong rejections = new AtomicLong();
+    private int threads;
+    private int queueCapacity;
+    private int retryAfterSeconds;
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    private void configureExecutor() {
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new ThreadFactoryBuilder().setNameFormat("filter-worker-%d").setDaemon(true).build(),
+                new ThreadPoolExecutor.AbortPolicy());
+        LOGGER.info("Initializing the filter executor with {} threads and room for {} queued requests", threads, queueCapacity);
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Queue the work and return a future for its result. The future fails with whatever the work throws.
+     *
+     * @throws RejectedExecutionException If the queue is full.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> work) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    result.complete(work.call());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejections.incrementAndGet();
+            LOGGER.warn("Filter queue is full ({} queued); rejecting request", executor.getQueue().size());
+            throw e;
+        }
+        return result;
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getCompletedCount() {
+        return executor.getCompletedTaskCount();
+    }
+
+    public long getRejections() {
+        return rejections.get();
+    }
+
+    /**
+     * @return How long a rejected client should wait before trying again.
+     */
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    @Inject
+    public void setThreads(@Value("${imagechallenge.executor.threads}") int threads) {
+        this.threads = threads;
+    }
+
+    @Inject
+    public void setQueueCapacity(@Value("${imagechallenge.executor.queue}") int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    @Inject
+    public void setRetryAfterSeconds(@Value("${imagechallenge.executor.retryafter}") int retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
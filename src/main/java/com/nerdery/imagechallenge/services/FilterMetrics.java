@@ -0,0 +1,100 @@
+package com.nerdery.imagechallenge.services;
+
+import com.google.common.collect.ImmutableMap;
+import com.nerdery.imagechallenge.services.filters.FilterResult;
+import com.nerdery.imagechallenge.services.filters.StageTime;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregates how long filters take, per filter (or pipeline), per pipeline stage, and for encoding per format.<p/>
+ *
+ * Throughput is measured against uptime, while pixel rates are measured against the time actually spent working, so
+ * they stay comparable between busy and idle periods.
+ */
+@Service
+public class FilterMetrics {
+    private static final double[] PERCENTILES = {50, 90, 99};
+
+    private final long startNanos = System.nanoTime();
+    private final ConcurrentMap<String, Timer> filters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Timer> stages = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Timer> encoders = new ConcurrentHashMap<>();
+
+    /**
+     * Record a finished filter run. The stages are only recorded separately when there is more than one.
+     */
+    public void recordFilter(String filterName, FilterResult result) {
+        long pixels = result.getPixelCount();
+        timer(filters, filterName).record(result.getElapsedNanos(), pixels);
+        if (result.getStageTimes().size() > 1) {
+            for (StageTime stageTime : result.getStageTimes()) {
+                timer(stages, stageTime.getStageName()).record(stageTime.getElapsedNanos(), pixels);
+            }
+        }
+    }
+
+    public void recordEncode(String format, long elapsedNanos, long pixels) {
+        timer(encoders, format).record(elapsedNanos, pixels);
+    }
+
+    /**
+     * @return A snapshot of every timer, shaped for rendering as JSON.
+     */
+    public Map<String, Object> snapshot() {
+        double uptimeSeconds = (System.nanoTime() - startNanos) / 1e9;
+        return ImmutableMap.of(
+                "filters", snapshot(filters, uptimeSeconds),
+                "stages", snapshot(stages, uptimeSeconds),
+                "encoders", snapshot(encoders, uptimeSeconds));
+    }
+
+    private static Map<String, Object> snapshot(Map<String, Timer> timers, double uptimeSeconds) {
+        SortedMap<String, Object> snapshot = new TreeMap<>();
+        timers.forEach((name, timer) -> snapshot.put(name, timer.snapshot(uptimeSeconds)));
+        return snapshot;
+    }
+
+    private static Timer timer(ConcurrentMap<String, Timer> timers, String name) {
+        return timers.computeIfAbsent(name, key -> new Timer());
+    }
+
+    /**
+     * Latencies of one kind of work, plus how many pixels went through it.
+     */
+    private static class Timer {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder pixels = new LongAdder();
+
+        void record(long elapsedNanos, long pixelCount) {
+            latency.record(elapsedNanos);
+            pixels.add(pixelCount);
+        }
+
+        Map<String, Object> snapshot(double uptimeSeconds) {
+            Map<String, Object> snapshot = new TreeMap<>();
+            long count = latency.getCount();
+            long totalNanos = latency.getTotal();
+            snapshot.put("count", count);
+            snapshot.put("throughputPerSecond", uptimeSeconds > 0 ? count / uptimeSeconds : 0);
+            snapshot.put("pixelsPerSecond", totalNanos > 0 ? pixels.sum() * 1e9 / totalNanos : 0);
+            snapshot.put("meanMillis", latency.getMean() / TimeUnit.MILLISECONDS.toNanos(1));
+            for (double percentile : PERCENTILES) {
+                snapshot.put("p" + (int) percentile + "Millis", toMillis(latency.getValueAtPercentile(percentile)));
+            }
+            snapshot.put("maxMillis", toMillis(latency.getMax()));
+            return snapshot;
+        }
+
+        private static double toMillis(long nanos) {
+            return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+}
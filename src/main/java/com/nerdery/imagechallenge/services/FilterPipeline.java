@@ -0,0 +1,196 @@
+package com.nerdery.imagechallenge.services;
+
+import com.google.common.base.Joiner;
+import com.nerdery.imagechallenge.services.filters.ConvolutionFilter;
+import com.nerdery.imagechallenge.services.filters.FilterParameters;
+import com.nerdery.imagechallenge.services.filters.FilterResult;
+import com.nerdery.imagechallenge.services.filters.ImageFilter;
+import com.nerdery.imagechallenge.services.filters.InputKeyedFilter;
+import com.nerdery.imagechallenge.services.filters.PixelBuffer;
+import com.nerdery.imagechallenge.services.filters.PixelFilter;
+import com.nerdery.imagechallenge.services.filters.PointFilter;
+import com.nerdery.imagechallenge.services.filters.StageTime;
+import com.nerdery.imagechallenge.services.filters.StagedFilter;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A chain of filters applied one after another, e.g. <code>ColorInvert+OldTimeyEffect+ColorRotate</code>.<p/>
+ *
+ * Stages hand their output to the next stage in memory. Adjacent {@link PointFilter}s (including the point stages
+ * of {@link StagedFilter}s) are fused into one pass, which is folded into the preceding {@link ConvolutionFilter} if
+ * there is one, and once the pipeline owns an intermediate buffer point stages run in place instead of allocating a
+ * new image.<p/>
+ *
+ * The pipeline carries the request's {@link FilterParameters}, which every filter in it is run with.
+ */
+public class FilterPipeline {
+    public static final String SEPARATOR = "+";
+
+    private final String name;
+    private final List<ImageFilter> filters;
+    private final List<ImageFilter> stages;
+    private final FilterParameters parameters;
+
+    public FilterPipeline(List<ImageFilter> filters) {
+        this(filters, FilterParameters.NONE);
+    }
+
+    public FilterPipeline(List<ImageFilter> filters, FilterParameters parameters) {
+        this.filters = filters;
+        this.parameters = parameters;
+        this.name = Joiner.on(SEPARATOR).join(filters.stream().map(ImageFilter::getName).iterator());
+        this.stages = fuse(expand(filters));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public FilterParameters getParameters() {
+        return parameters;
+    }
+
+    /**
+     * @return Whether every filter in the pipeline is deterministic.
+     */
+    public boolean isDeterministic() {
+        return filters.stream().allMatch(ImageFilter::isDeterministic);
+    }
+
+    /**
+     * @return The combined kernel radius of the pipeline; see {@link ImageFilter#getKernelRadius()}.
+     */
+    public int getKernelRadius() {
+        return ImageFilter.combinedKernelRadius(stages, parameters);
+    }
+
+    public FilterResult transform(BufferedImage sourceImage) {
+        return transform(sourceImage, null);
+    }
+
+    /**
+     * @param sourceKey The source image's content hash, which {@link InputKeyedFilter}s get, along with the stages
+     *                  before them, to identify their input; or <code>null</code> if it isn't known.
+     */
+    public FilterResult transform(BufferedImage sourceImage, String sourceKey) {
+        List<StageTime> stageTimes = new ArrayList<>();
+        List<String> upstream = new ArrayList<>();
+        long startTime = System.nanoTime();
+
+        BufferedImage image = sourceImage;
+        PixelBuffer pixels = null;
+        boolean owned = false;
+        for (ImageFilter stage : stages) {
+            long stageStart = System.nanoTime();
+            if (stage instanceof PixelFilter) {
+                if (pixels == null) {
+                    pixels = PixelBuffer.normalize(image);
+                    owned = pixels.getImage() != sourceImage;
+                }
+                // never write into the shared source image
+                PixelBuffer target = owned && stage instanceof PointFilter ? pixels : pixels.createCompatible();
+                ((PixelFilter) stage).transform(pixels, target);
+                pixels = target;
+                image = target.getImage();
+                owned = true;
+            } else if (sourceKey != null && stage instanceof InputKeyedFilter) {
+                image = ((InputKeyedFilter) stage).transform(image, parameters, inputKey(sourceKey, upstream));
+                pixels = null;
+                owned = image != sourceImage;
+            } else {
+                image = stage.transform(image, parameters);
+                pixels = null;
+                owned = image != sourceImage;
+            }
+            stageTimes.add(new StageTime(stage.getName(), System.nanoTime() - stageStart));
+            upstream.add(stage.getName());
+        }
+
+        return new FilterResult(System.nanoTime() - startTime, image, stageTimes);
+    }
+
+    /**
+     * The source's content hash, plus the stages that have already run on it and the parameters they ran with.
+     */
+    private String inputKey(String sourceKey, List<String> upstream) {
+        if (upstream.isEmpty()) {
+            return sourceKey;
+        }
+        return sourceKey + "|" + Joiner.on(SEPARATOR).join(upstream) + parameters;
+    }
+
+    private static List<ImageFilter> expand(List<ImageFilter> filters) {
+        List<ImageFilter> expanded = new ArrayList<>();
+        for (ImageFilter filter : filters) {
+            if (filter instanceof StagedFilter) {
+                expanded.addAll(expand(((StagedFilter) filter).getStages()));
+            } else {
+                expanded.add(filter);
+            }
+        }
+        return expanded;
+    }
+
+    private static List<ImageFilter> fuse(List<ImageFilter> expanded) {
+        List<ImageFilter> fused = new ArrayList<>();
+        List<PointFilter> run = new ArrayList<>();
+        for (ImageFilter stage : expanded) {
+            if (stage instanceof PointFilter) {
+                run.add((PointFilter) stage);
+            } else {
+                flush(run, fused);
+                fused.add(stage);
+            }
+        }
+        flush(run, fused);
+        return fused;
+    }
+
+    /**
+     * Add the run of point filters as one stage, or fuse it into the convolution before it so it runs as each
+     * convolved pixel is written.
+     */
+    private static void flush(List<PointFilter> run, List<ImageFilter> fused) {
+        if (run.isEmpty()) {
+            return;
+        }
+        PointFilter point = run.size() == 1 ? run.get(0) : new FusedPointFilter(run);
+        int last = fused.size() - 1;
+        if (last >= 0 && fused.get(last) instanceof ConvolutionFilter) {
+            fused.set(last, ((ConvolutionFilter) fused.get(last)).thenApply(point));
+        } else {
+            fused.add(point);
+        }
+        run.clear();
+    }
+
+    /**
+     * Applies several point filters to each pixel in turn, so the image is only traversed once.
+     */
+    private static class FusedPointFilter implements PointFilter {
+        private final PointFilter[] filters;
+        private final String name;
+
+        FusedPointFilter(List<PointFilter> filters) {
+            this.filters = filters.toArray(new PointFilter[filters.size()]);
+            this.name = filters.stream().map(ImageFilter::getName).collect(Collectors.joining(SEPARATOR, "(", ")"));
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public int filterPixel(int pixel) {
+            for (PointFilter filter : filters) {
+                pixel = filter.filterPixel(pixel);
+            }
+            return pixel;
+        }
+    }
+}
@@ -1,11 +1,16 @@
 package com.nerdery.imagechallenge.services;
 
+import com.google.common.base.Splitter;
+import com.nerdery.imagechallenge.services.filters.FilterParameter;
+import com.nerdery.imagechallenge.services.filters.FilterParameters;
 import com.nerdery.imagechallenge.services.filters.FilterResult;
 import com.nerdery.imagechallenge.services.filters.ImageFilter;
 import org.springframework.stereotype.Service;
 
 import javax.inject.Inject;
 import java.awt.image.BufferedImage;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -18,6 +23,8 @@ import java.util.stream.Collectors;
 @Service
 public class FilterService {
 
+    private static final int MAX_PIPELINE_LENGTH = 16;
+
     private Map<String, ImageFilter> filters;
 
     @Inject
@@ -25,14 +32,43 @@ public class FilterService {
         this.filters = filters.stream().collect(Collectors.toMap(ImageFilter::getName, Function.identity()));
     }
 
-    public Optional<FilterResult> transformImage(BufferedImage sourceImage, String filterName) {
-        if (!filters.containsKey(filterName)) {
+    public Collection<ImageFilter> getFilters() {
+        return Collections.unmodifiableCollection(filters.values());
+    }
+
+    public Optional<ImageFilter> getFilter(String filterName) {
+        return Optional.ofNullable(filters.get(filterName));
+    }
+
+    /**
+     * Resolve a filter name, or several names joined with {@link FilterPipeline#SEPARATOR}, into a pipeline.
+     *
+     * @return The pipeline, or empty if any of the names is unknown.
+     */
+    public Optional<FilterPipeline> getPipeline(String expression) {
+        return getPipeline(expression, Collections.emptyMap());
+    }
+
+    /**
+     * Resolve a pipeline as above, with the filters tuned by whichever of the request parameters they accept; see
+     * {@link ImageFilter#getParameters()}. Other request parameters are ignored.
+     *
+     * @return The pipeline, or empty if any of the names is unknown.
+     * @throws IllegalArgumentException If a parameter value is invalid for a filter in the pipeline.
+     */
+    public Optional<FilterPipeline> getPipeline(String expression, Map<String, String> requestParameters) {
+        List<String> names = Splitter.on(FilterPipeline.SEPARATOR).splitToList(expression);
+        if (names.size() > MAX_PIPELINE_LENGTH || !filters.keySet().containsAll(names)) {
             return Optional.empty();
-        } else {
-            long startTime = System.currentTimeMillis();
-            BufferedImage transformedImage = filters.get(filterName).transform(sourceImage);
-            FilterResult result = new FilterResult(System.currentTimeMillis() - startTime, transformedImage);
-            return Optional.of(result);
         }
+        List<ImageFilter> pipeline = names.stream().map(filters::get).collect(Collectors.toList());
+        List<FilterParameter> accepted = pipeline.stream()
+                .flatMap(filter -> filter.getParameters().stream())
+                .collect(Collectors.toList());
+        return Optional.of(new FilterPipeline(pipeline, FilterParameters.parse(accepted, requestParameters)));
+    }
+
+    public Optional<FilterResult> transformImage(BufferedImage sourceImage, String filterName) {
+        return getPipeline(filterName).map(pipeline -> pipeline.transform(sourceImage));
     }
 }
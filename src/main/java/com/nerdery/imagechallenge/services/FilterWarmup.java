@@ -0,0 +1,114 @@
+package com.nerdery.imagechallenge.services;
+
+import com.nerdery.imagechallenge.services.filters.ImageFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.inject.Inject;
+import java.awt.image.BufferedImage;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs every filter a few times on small synthetic images once the application has started, so their hot loops are
+ * compiled before the first real request instead of during it. The application reports itself ready only once this
+ * has finished; see {@link #isReady()}.<p/>
+ *
+ * Each filter is warmed on both the 3-byte BGR images that decoded JPEGs arrive as and on ARGB images, since filters
+ * take different paths for the two. Filters that aren't deterministic, like the genetic filter, run for far longer
+ * than a warm-up should and are skipped.
+ */
+@Service
+public class FilterWarmup {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FilterWarmup.class);
+    private static final int[] IMAGE_TYPES = {BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_INT_ARGB};
+
+    private volatile boolean ready;
+    private volatile long elapsedMillis;
+    private boolean enabled;
+    private int size;
+    private int iterations;
+    private FilterService filterService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!enabled) {
+            ready = true;
+            return;
+        }
+
+        long start = System.nanoTime();
+        LOGGER.info("Warming up the filters on {}x{} images, {} times each", size, size, iterations);
+        for (int type : IMAGE_TYPES) {
+            BufferedImage image = createImage(type);
+            for (ImageFilter filter : filterService.getFilters()) {
+                if (filter.isDeterministic()) {
+                    warmUp(filter, image);
+                }
+            }
+        }
+        elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        ready = true;
+        LOGGER.info("Warm-up finished in {} ms", elapsedMillis);
+    }
+
+    private void warmUp(ImageFilter filter, BufferedImage image) {
+        try {
+            for (int i = 0; i < iterations; i++) {
+                filter.transform(image);
+            }
+        } catch (RuntimeException e) {
+            // not every filter handles every image type; that is the filter's business, not the warm-up's
+            LOGGER.warn("Unable to warm up filter {} on image type {}: {}", filter.getName(), image.getType(), e.toString());
+        }
+    }
+
+    /**
+     * Noise rather than a flat color, so the filters take the same branches they do on photographs.
+     */
+    private BufferedImage createImage(int type) {
+        BufferedImage image = new BufferedImage(size, size, type);
+        SplittableRandom random = new SplittableRandom(size);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+
+    /**
+     * @return Whether the warm-up has finished, or was turned off.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Inject
+    public void setEnabled(@Value("${imagechallenge.warmup.enabled}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Inject
+    public void setSize(@Value("${imagechallenge.warmup.size}") int size) {
+        this.size = size;
+    }
+
+    @Inject
+    public void setIterations(@Value("${imagechallenge.warmup.iterations}") int iterations) {
+        this.iterations = iterations;
+    }
+
+    @Inject
+    public void setFilterService(FilterService filterService) {
+        this.filterService = filterService;
+    }
+}
@@ -0,0 +1,174 @@
+package com.nerdery.imagechallenge.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOInvalidTreeException;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import javax.inject.Inject;
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Encodes images with pooled {@link ImageWriter}s.<p/>
+ *
+ * Looking up a writer through the service registry and setting up its native state costs more than encoding a small
+ * image, so idle writers are kept per format and reused. The encoder writes through a memory-cached stream straight
+ * into the given output, instead of {@link ImageIO#write}'s default of staging the bytes in a temporary file.
+ */
+@Service
+public class ImageEncoder {
+
+    private static final String ANIMATION_FORMAT = "gif";
+
+    private final ConcurrentMap<String, BlockingQueue<ImageWriter>> idleWriters = new ConcurrentHashMap<>();
+    private int maxIdlePerFormat;
+    private FilterMetrics filterMetrics;
+
+    public void encode(RenderedImage image, String format, EncodeOptions options, OutputStream out) throws IOException {
+        ImageWriter writer = borrow(format);
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try (ImageOutputStream output = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), options.createWriteParam(writer));
+            succeeded = true;
+        } finally {
+            release(format, writer, succeeded);
+        }
+        filterMetrics.recordEncode(format, System.nanoTime() - start, (long) image.getWidth() * image.getHeight());
+    }
+
+    public byte[] encode(RenderedImage image, String format, EncodeOptions options) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encode(image, format, options, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Encode frames as an animated GIF that loops forever. Frames are pulled from the iterator only as the previous one
+     * has been written, and each frame's bytes are flushed to the output before the next is pulled, so neither the
+     * frames nor the encoded animation are ever held in full.
+     *
+     * @param frames The frames, in order.
+     * @param delayMillis How long to show each frame. GIF counts in hundredths of a second.
+     */
+    public void encodeAnimation(Iterator<? extends RenderedImage> frames, int delayMillis, OutputStream out) throws IOException {
+        ImageWriter writer = borrow(ANIMATION_FORMAT);
+        long start = System.nanoTime();
+        long pixels = 0;
+        boolean succeeded = false;
+        try (ImageOutputStream output = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(output);
+            writer.prepareWriteSequence(null);
+            boolean first = true;
+            while (frames.hasNext()) {
+                RenderedImage frame = frames.next();
+                writer.writeToSequence(new IIOImage(frame, null, frameMetadata(writer, frame, delayMillis, first)), null);
+                output.flush();
+                out.flush();
+                pixels += (long) frame.getWidth() * frame.getHeight();
+                first = false;
+            }
+            writer.endWriteSequence();
+            succeeded = true;
+        } finally {
+            release(ANIMATION_FORMAT, writer, succeeded);
+        }
+        filterMetrics.recordEncode(ANIMATION_FORMAT, System.nanoTime() - start, pixels);
+    }
+
+    /**
+     * GIF metadata for one frame of an animation: the frame delay, and on the first frame the Netscape extension that
+     * makes the animation loop.
+     */
+    private static IIOMetadata frameMetadata(ImageWriter writer, RenderedImage frame, int delayMillis, boolean first)
+            throws IIOInvalidTreeException {
+        IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(frame), null);
+        String format = metadata.getNativeMetadataFormatName();
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+
+        IIOMetadataNode control = child(root, "GraphicControlExtension");
+        control.setAttribute("disposalMethod", "none");
+        control.setAttribute("userInputFlag", "FALSE");
+        control.setAttribute("transparentColorFlag", "FALSE");
+        control.setAttribute("transparentColorIndex", "0");
+        control.setAttribute("delayTime", String.valueOf(Math.max(1, delayMillis / 10)));
+
+        if (first) {
+            IIOMetadataNode loop = new IIOMetadataNode("ApplicationExtension");
+            loop.setAttribute("applicationID", "NETSCAPE");
+            loop.setAttribute("authenticationCode", "2.0");
+            // sub-block 1, loop count 0: forever
+            loop.setUserObject(new byte[]{1, 0, 0});
+            child(root, "ApplicationExtensions").appendChild(loop);
+        }
+
+        metadata.setFromTree(format, root);
+        return metadata;
+    }
+
+    private static IIOMetadataNode child(IIOMetadataNode parent, String name) {
+        for (int i = 0; i < parent.getLength(); i++) {
+            if (parent.item(i).getNodeName().equals(name)) {
+                return (IIOMetadataNode) parent.item(i);
+            }
+        }
+        IIOMetadataNode node = new IIOMetadataNode(name);
+        parent.appendChild(node);
+        return node;
+    }
+
+    private ImageWriter borrow(String format) throws IOException {
+        ImageWriter writer = pool(format).poll();
+        if (writer != null) {
+            return writer;
+        }
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            throw new IOException("No image writer for format " + format);
+        }
+        return writers.next();
+    }
+
+    /**
+     * Return a writer to the pool. Writers that failed part way through are thrown away rather than trusted again.
+     */
+    private void release(String format, ImageWriter writer, boolean reusable) {
+        if (reusable) {
+            writer.reset();
+            if (pool(format).offer(writer)) {
+                return;
+            }
+        }
+        writer.dispose();
+    }
+
+    private BlockingQueue<ImageWriter> pool(String format) {
+        return idleWriters.computeIfAbsent(format, key -> new ArrayBlockingQueue<>(maxIdlePerFormat));
+    }
+
+    @Inject
+    public void setMaxIdlePerFormat(@Value("${imagechallenge.encoder.pooled}") int maxIdlePerFormat) {
+        this.maxIdlePerFormat = maxIdlePerFormat;
+    }
+
+    @Inject
+    public void setFilterMetrics(FilterMetrics filterMetrics) {
+        this.filterMetrics = filterMetrics;
+    }
+}
@@ -0,0 +1,61 @@
+package com.nerdery.imagechallenge.services;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Dimension;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Optional;
+
+/**
+ * Helpers for reading encoded images a piece at a time instead of decoding them whole with
+ * {@link ImageIO#read(InputStream)}.
+ */
+public final class ImageReaders {
+
+    private ImageReaders() {}
+
+    /**
+     * Find a reader for the stream and attach it. The caller owns both the reader and the stream and must dispose /
+     * close them.
+     *
+     * @throws IOException If no installed reader recognizes the stream.
+     */
+    public static ImageReader open(ImageInputStream input) throws IOException {
+        if (input == null) {
+            throw new IOException("Unable to create an image input stream");
+        }
+        return find(input).orElseThrow(() -> new IOException("Unrecognized image format"));
+    }
+
+    /**
+     * Find a reader for the stream and attach it, as {@link #open(ImageInputStream)} does.
+     *
+     * @return The reader, or empty if no installed reader recognizes the stream.
+     */
+    public static Optional<ImageReader> find(ImageInputStream input) throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            return Optional.empty();
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(input, false, true);
+        return Optional.of(reader);
+    }
+
+    /**
+     * Read the dimensions of the first image in the stream from its header, without decoding any pixels.
+     */
+    public static Dimension readDimensions(InputStream in) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            ImageReader reader = open(input);
+            try {
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+}
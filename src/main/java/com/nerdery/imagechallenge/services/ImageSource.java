@@ -0,0 +1,22 @@
+package com.nerdery.imagechallenge.services;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * An image that requests filter: the configured {@link SourceImage}, or one uploaded with the request.
+ */
+public interface ImageSource {
+
+    /**
+     * @return A hash of the encoded image, identifying it in result cache keys.
+     */
+    String getContentHash();
+
+    long getPixelCount();
+
+    /**
+     * @return The decoded image, which may be shared and must not be modified.
+     */
+    BufferedImage getImage() throws IOException;
+}
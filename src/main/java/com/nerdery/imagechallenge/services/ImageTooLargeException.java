@@ -0,0 +1,12 @@
+package com.nerdery.imagechallenge.services;
+
+/**
+ * Thrown when an image is bigger than the service is configured to process in one piece.
+ */
+public class ImageTooLargeException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    public ImageTooLargeException(String message) {
+        super(message);
+    }
+}
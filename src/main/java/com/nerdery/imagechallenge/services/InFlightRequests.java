@@ -0,0 +1,71 @@
+package com.nerdery.imagechallenge.services;
+
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Registry of renders that are currently running, so identical requests that arrive together share one computation.
+ * <p/>
+ *
+ * The first request for a key starts the render and every request for the same key that arrives before it finishes
+ * gets the same future, and so the same encoded image. Waiting requests don't take up a place in the
+ * {@link FilterExecutor} queue. A key is forgotten as soon as its render finishes; after that the {@link ResultCache}
+ * answers.
+ */
+@Service
+public class InFlightRequests {
+
+    private final ConcurrentMap<ResultKey, CompletableFuture<EncodedImage>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong saved = new AtomicLong();
+
+    /**
+     * Join the render already running for this key, or start one with the given supplier. If starting fails, the
+     * failure is thrown to this caller and also passed on to anyone who joined in the meantime.
+     */
+    public CompletableFuture<EncodedImage> get(ResultKey key, Supplier<CompletableFuture<EncodedImage>> render) {
+        CompletableFuture<EncodedImage> shared = new CompletableFuture<>();
+        CompletableFuture<EncodedImage> existing = inFlight.putIfAbsent(key, shared);
+        if (existing != null) {
+            saved.incrementAndGet();
+            return existing;
+        }
+
+        started.incrementAndGet();
+        try {
+            render.get().whenComplete((image, e) -> {
+                inFlight.remove(key, shared);
+                if (e != null) {
+                    shared.completeExceptionally(e);
+                } else {
+                    shared.complete(image);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, shared);
+            shared.completeExceptionally(e);
+            throw e;
+        }
+        return shared;
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    public long getStartedComputations() {
+        return started.get();
+    }
+
+    /**
+     * @return How many requests were answered by joining a render that was already running.
+     */
+    public long getSavedComputations() {
+        return saved.get();
+    }
+}
@@ -0,0 +1,94 @@
+package com.nerdery.imagechallenge.services;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of final encoded filter outputs. The cache is limited by the total number of bytes it holds and
+ * evicts the least recently used results first.
+ */
+@Service
+public class ResultCache {
+
+    private final AtomicLong totalBytes = new AtomicLong();
+    private long maxBytes;
+    private Cache<ResultKey, EncodedImage> cache;
+
+    @PostConstruct
+    private void configureCache() {
+        RemovalListener<ResultKey, EncodedImage> listener = notification -> totalBytes.addAndGet(-notification.getValue().getBytes().length);
+        cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .<ResultKey, EncodedImage>weigher((key, value) -> value.getBytes().length)
+                .removalListener(listener)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Return the cached image for the given key, rendering and caching them first if they aren't present. Concurrent
+     * callers for a key that is being rendered wait for that render instead of starting their own.
+     */
+    public EncodedImage get(ResultKey key, Callable<EncodedImage> renderer) throws IOException {
+        try {
+            return cache.get(key, () -> {
+                EncodedImage image = renderer.call();
+                totalBytes.addAndGet(image.getBytes().length);
+                return image;
+            });
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Unable to render " + key, e.getCause());
+        }
+    }
+
+    /**
+     * @return The cached image for the given key, without rendering anything if they aren't present.
+     */
+    public Optional<EncodedImage> getIfPresent(ResultKey key) {
+        return Optional.ofNullable(cache.getIfPresent(key));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public double getHitRatio() {
+        return cache.stats().hitRate();
+    }
+
+    public long getEntryCount() {
+        return cache.size();
+    }
+
+    public long getTotalBytes() {
+        return totalBytes.get();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    @Inject
+    public void setMaxBytes(@Value("${imagechallenge.resultcache.maxbytes}") long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+}
@@ -0,0 +1,61 @@
+package com.nerdery.imagechallenge.services;
+
+import com.google.common.collect.ImmutableSortedMap;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+import java.util.Map;
+
+/**
+ * Identifies an encoded filter result: the same source content run through the same filter with the same parameters
+ * and encoded to the same format always produces the same bytes.
+ */
+public class ResultKey {
+    private final String sourceHash;
+    private final String filterName;
+    private final String format;
+    private final Map<String, String> parameters;
+
+    public ResultKey(String sourceHash, String filterName, String format, Map<String, String> parameters) {
+        this.sourceHash = sourceHash;
+        this.filterName = filterName;
+        this.format = format;
+        this.parameters = ImmutableSortedMap.copyOf(parameters);
+    }
+
+    public String getSourceHash() {
+        return sourceHash;
+    }
+
+    public String getFilterName() {
+        return filterName;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public Map<String, String> getParameters() {
+        return parameters;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (other != null && other instanceof ResultKey) {
+            ResultKey key = (ResultKey) other;
+            return sourceHash.equals(key.sourceHash) && filterName.equals(key.filterName)
+                    && format.equals(key.format) && parameters.equals(key.parameters);
+        }
+
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder().append(sourceHash).append(filterName).append(format).append(parameters).toHashCode();
+    }
+
+    @Override
+    public String toString() {
+        return filterName + "/" + format + parameters + "@" + sourceHash;
+    }
+}
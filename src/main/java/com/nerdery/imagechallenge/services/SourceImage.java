@@ -0,0 +1,113 @@
+package com.nerdery.imagechallenge.services;
+
+import javax.imageio.ImageIO;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An immutable snapshot of the source image: the raw bytes, their content hash, and the image decoded from them.<p/>
+ *
+ * {@link SourceImageService} decodes the image before handing the snapshot out, except for sources that are only ever
+ * processed in tiles; those are only decoded if something asks for the whole image, so they never have to fit in
+ * memory otherwise. The decoded image is shared between every request that uses this snapshot, so it must be
+ * treated as read-only: filters always render into a new image and never write back into the source.
+ */
+public class SourceImage implements ImageSource {
+    private final byte[] bytes;
+    private final String contentHash;
+    private final String entityTag;
+    private final long lastModified;
+    private final Dimension dimensions;
+    private final Decoded decoded;
+
+    public SourceImage(byte[] bytes, String contentHash, String entityTag, long lastModified) throws IOException {
+        this.bytes = bytes;
+        this.contentHash = contentHash;
+        this.entityTag = entityTag;
+        this.lastModified = lastModified;
+        this.dimensions = ImageReaders.readDimensions(openStream());
+        this.decoded = new Decoded();
+    }
+
+    private SourceImage(SourceImage other, String entityTag, long lastModified) {
+        this.bytes = other.bytes;
+        this.contentHash = other.contentHash;
+        this.entityTag = entityTag;
+        this.lastModified = lastModified;
+        this.dimensions = other.dimensions;
+        this.decoded = other.decoded;
+    }
+
+    /**
+     * @return The same content with new cache validators; the decoded image, if any, is shared.
+     */
+    public SourceImage withValidators(String entityTag, long lastModified) {
+        return new SourceImage(this, entityTag, lastModified);
+    }
+
+    /**
+     * @return The shared decoded image. Callers must not modify it.
+     */
+    @Override
+    public BufferedImage getImage() throws IOException {
+        return decoded.get();
+    }
+
+    public ByteBuffer getBytes() {
+        return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+
+    public InputStream openStream() {
+        return new ByteArrayInputStream(bytes);
+    }
+
+    public Dimension getDimensions() {
+        return new Dimension(dimensions);
+    }
+
+    @Override
+    public long getPixelCount() {
+        return (long) dimensions.width * dimensions.height;
+    }
+
+    @Override
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public String getEntityTag() {
+        return entityTag;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Decodes the bytes once, when first asked to, and holds on to the result.
+     */
+    private class Decoded {
+        private volatile BufferedImage image;
+
+        BufferedImage get() throws IOException {
+            BufferedImage result = image;
+            if (result == null) {
+                synchronized (this) {
+                    result = image;
+                    if (result == null) {
+                        result = ImageIO.read(openStream());
+                        if (result == null) {
+                            throw new IOException("Unable to decode the source image");
+                        }
+                        image = result;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.nerdery.imagechallenge.services;
+
+import com.google.common.hash.Hashing;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the decoded source image in memory so requests don't pay for a network fetch and a decode before any filter
+ * runs.<p/>
+ *
+ * The image is fetched on first use and then revalidated in the background with a conditional request
+ * (<code>If-None-Match</code> / <code>If-Modified-Since</code>), so a new source is only downloaded and decoded when
+ * it has actually changed. A new snapshot is decoded before it is swapped in, so neither the first request after a
+ * refresh nor a broken new source costs requests a decode; only sources large enough to be filtered in tiles are
+ * left undecoded.
+ */
+@Service
+public class SourceImageService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SourceImageService.class);
+    private static final int TIMEOUT_MILLIS = 10000;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+
+    private String sourceUrl;
+    private TiledFilterService tiledFilterService;
+    private volatile SourceImage current;
+
+    public SourceImage getSourceImage() throws IOException {
+        SourceImage sourceImage = current;
+        if (sourceImage != null) {
+            hits.incrementAndGet();
+            return sourceImage;
+        }
+        return load();
+    }
+
+    /**
+     * @return The current snapshot, or empty if the source hasn't been fetched yet. Never blocks on the network.
+     */
+    public Optional<SourceImage> getIfLoaded() {
+        SourceImage sourceImage = current;
+        if (sourceImage != null) {
+            hits.incrementAndGet();
+        }
+        return Optional.ofNullable(sourceImage);
+    }
+
+    private synchronized SourceImage load() throws IOException {
+        if (current != null) {
+            hits.incrementAndGet();
+            return current;
+        }
+        misses.incrementAndGet();
+        current = fetch(null);
+        return current;
+    }
+
+    /**
+     * Ask the origin whether the source image has changed since we last fetched it, and swap in the new image if so.
+     * Requests keep using the previous snapshot until the new one has been fully downloaded.
+     */
+    @Scheduled(fixedDelayString = "${imagechallenge.source.refreshms}", initialDelayString = "${imagechallenge.source.refreshms}")
+    public void revalidate() {
+        SourceImage previous = current;
+        if (previous == null) {
+            return;
+        }
+        try {
+            SourceImage fetched = fetch(previous);
+            if (fetched == previous) {
+                notModified.incrementAndGet();
+            } else if (!fetched.getContentHash().equals(previous.getContentHash())) {
+                LOGGER.info("Source image at {} changed; new content hash {}", sourceUrl, fetched.getContentHash());
+                current = fetched;
+                refreshes.incrementAndGet();
+            } else {
+                current = fetched;
+                notModified.incrementAndGet();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to revalidate the source image at {}; keeping the cached copy", sourceUrl, e);
+        }
+    }
+
+    /**
+     * Fetch the source image. When a previous snapshot is given the request is conditional, and the previous snapshot
+     * itself is returned if the origin reports that nothing changed.
+     */
+    private SourceImage fetch(SourceImage previous) throws IOException {
+        URLConnection connection = new URL(sourceUrl).openConnection();
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        if (previous != null) {
+            if (previous.getEntityTag() != null) {
+                connection.setRequestProperty("If-None-Match", previous.getEntityTag());
+            }
+            if (previous.getLastModified() > 0) {
+                connection.setIfModifiedSince(previous.getLastModified());
+            }
+        }
+
+        if (connection instanceof HttpURLConnection) {
+            int status = ((HttpURLConnection) connection).getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED && previous != null) {
+                return previous;
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Unexpected status " + status + " fetching " + sourceUrl);
+            }
+        }
+
+        byte[] bytes;
+        try (InputStream in = connection.getInputStream()) {
+            bytes = IOUtils.toByteArray(in);
+        }
+        String contentHash = Hashing.sha256().hashBytes(bytes).toString();
+        String entityTag = connection.getHeaderField("ETag");
+        if (previous != null && previous.getContentHash().equals(contentHash)) {
+            // the origin didn't honor the conditional request, but the bytes are the same so keep the decoded image
+            return previous.withValidators(entityTag, connection.getLastModified());
+        }
+        SourceImage sourceImage = new SourceImage(bytes, contentHash, entityTag, connection.getLastModified());
+        if (!tiledFilterService.requiresTiling(sourceImage.getPixelCount())) {
+            sourceImage.getImage();
+        }
+        return sourceImage;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getRefreshes() {
+        return refreshes.get();
+    }
+
+    public long getNotModified() {
+        return notModified.get();
+    }
+
+    @Inject
+    public void setSourceUrl(@Value("${imagechallenge.sourceurl}") String theSourceUrl) {
+        sourceUrl = theSourceUrl;
+    }
+
+    @Inject
+    public void setTiledFilterService(TiledFilterService tiledFilterService) {
+        this.tiledFilterService = tiledFilterService;
+    }
+}
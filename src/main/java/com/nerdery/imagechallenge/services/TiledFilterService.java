@@ -0,0 +1,329 @@
+package com.nerdery.imagechallenge.services;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.inject.Inject;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Filters images that are too big to hold in memory by working on horizontal strips.<p/>
+ *
+ * Each strip is decoded on its own with {@link ImageReadParam#setSourceRegion(Rectangle)}, together with a halo of
+ * extra rows above and below that is as deep as the pipeline's kernel radius, so pixels near a strip edge see the
+ * same neighbors they would in the whole image. The halo is cut off again after filtering. Strips are filtered in
+ * parallel, a bounded number ahead of the encoder, and the encoder pulls finished rows as it goes, so peak memory is
+ * roughly strip size times worker count no matter how big the image is.<p/>
+ *
+ * Only PNG output is supported: the PNG encoder consumes its input row by row, while the JPEG and GIF encoders copy
+ * the whole image into one raster before they start. Formats that can't seek to a region (JPEG among them) decode and
+ * discard the rows above each strip, so decoding is the price paid for the bounded memory.
+ */
+@Service
+public class TiledFilterService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TiledFilterService.class);
+    public static final String TILED_FORMAT = "png";
+
+    private int stripRows;
+    private int workers;
+    private long thresholdPixels;
+    private ExecutorService executorService;
+    private ImageEncoder imageEncoder;
+
+    @PostConstruct
+    private void configureService() {
+        executorService = Executors.newFixedThreadPool(workers,
+                new ThreadFactoryBuilder().setNameFormat("tiled-filter-%d").setDaemon(true).build());
+        LOGGER.info("Initializing tiled filtering with {} workers and {} rows per strip", workers, stripRows);
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    /**
+     * @return Whether an image with this many pixels should only be processed in tiles.
+     */
+    public boolean requiresTiling(long pixelCount) {
+        return pixelCount > thresholdPixels;
+    }
+
+    /**
+     * Filter the encoded image read from the input and write the result, encoded as {@link #TILED_FORMAT}, to the
+     * output.
+     *
+     * @throws IllegalArgumentException If the pipeline needs the whole image at once.
+     */
+    public void transform(InputStream in, FilterPipeline pipeline, EncodeOptions options, OutputStream out) throws IOException {
+        int halo = pipeline.getKernelRadius();
+        if (halo < 0) {
+            throw new IllegalArgumentException("Filter " + pipeline.getName() + " cannot be applied in tiles");
+        }
+
+        try (ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            ImageReader reader = ImageReaders.open(input);
+            StripImage image = null;
+            try {
+                image = new StripImage(reader, pipeline, halo);
+                LOGGER.info("Filtering a {}x{} image with {} in {} strips", image.getWidth(), image.getHeight(),
+                        pipeline.getName(), image.getNumYTiles());
+                imageEncoder.encode(image, TILED_FORMAT, options, out);
+            } finally {
+                if (image != null) {
+                    image.cancel();
+                }
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * The filtered image, presented to the encoder as a column of strips that are rendered on demand. The encoder
+     * reads rows top to bottom from a single thread; the strips just ahead of it are rendered in the background.
+     */
+    private class StripImage implements RenderedImage {
+        private final ImageReader reader;
+        private final FilterPipeline pipeline;
+        private final int halo;
+        private final int width;
+        private final int height;
+        private final int stripCount;
+        private final Map<Integer, Future<Raster>> strips = new HashMap<>();
+        private ColorModel colorModel;
+        private SampleModel sampleModel;
+
+        StripImage(ImageReader reader, FilterPipeline pipeline, int halo) throws IOException {
+            this.reader = reader;
+            this.pipeline = pipeline;
+            this.halo = halo;
+            this.width = reader.getWidth(0);
+            this.height = reader.getHeight(0);
+            this.stripCount = (height + stripRows - 1) / stripRows;
+
+            // the first strip tells us what the filtered pixels look like
+            BufferedImage first = renderStrip(0);
+            colorModel = first.getColorModel();
+            sampleModel = first.getSampleModel().createCompatibleSampleModel(width, stripRows);
+            strips.put(0, CompletableFuture.completedFuture(toStripRaster(first, 0)));
+        }
+
+        /**
+         * Decode the strip plus its halo, filter it, and crop the halo away again.
+         */
+        private BufferedImage renderStrip(int index) throws IOException {
+            int top = index * stripRows;
+            int rows = Math.min(stripRows, height - top);
+            int decodeTop = Math.max(0, top - halo);
+            int decodeBottom = Math.min(height, top + rows + halo);
+
+            BufferedImage decoded;
+            synchronized (reader) {
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(new Rectangle(0, decodeTop, width, decodeBottom - decodeTop));
+                decoded = reader.read(0, param);
+            }
+
+            BufferedImage filtered = pipeline.transform(decoded).getOutputImage();
+            return filtered.getSubimage(0, top - decodeTop, width, rows);
+        }
+
+        private Raster toStripRaster(BufferedImage strip, int index) {
+            return strip.getRaster().createChild(0, 0, strip.getWidth(), strip.getHeight(), 0, index * stripRows, null);
+        }
+
+        /**
+         * Get a finished strip, making sure the next few strips are being rendered and the ones above it are dropped.
+         */
+        private Raster getStrip(int index) {
+            strips.keySet().removeIf(i -> i < index);
+            for (int i = index; i < Math.min(stripCount, index + workers + 1); i++) {
+                final int strip = i;
+                strips.computeIfAbsent(i, k -> executorService.submit(() -> toStripRaster(renderStrip(strip), strip)));
+            }
+
+            try {
+                return strips.get(index).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while rendering strip " + index, e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Unable to render strip " + index, e.getCause());
+            }
+        }
+
+        void cancel() {
+            strips.values().forEach(strip -> strip.cancel(true));
+            strips.clear();
+        }
+
+        @Override
+        public Raster getData(Rectangle rect) {
+            Rectangle bounds = rect.intersection(new Rectangle(0, 0, width, height));
+            int firstStrip = bounds.y / stripRows;
+            int lastStrip = (bounds.y + bounds.height - 1) / stripRows;
+            if (firstStrip == lastStrip) {
+                return getStrip(firstStrip).createChild(bounds.x, bounds.y, bounds.width, bounds.height,
+                        bounds.x, bounds.y, null);
+            }
+
+            WritableRaster raster = Raster.createWritableRaster(
+                    sampleModel.createCompatibleSampleModel(bounds.width, bounds.height), bounds.getLocation());
+            for (int strip = firstStrip; strip <= lastStrip; strip++) {
+                raster.setRect(getStrip(strip));
+            }
+            return raster;
+        }
+
+        @Override
+        public Raster getData() {
+            return getData(new Rectangle(0, 0, width, height));
+        }
+
+        @Override
+        public WritableRaster copyData(WritableRaster raster) {
+            if (raster == null) {
+                raster = Raster.createWritableRaster(sampleModel.createCompatibleSampleModel(width, height), null);
+            }
+            raster.setRect(getData(raster.getBounds()));
+            return raster;
+        }
+
+        @Override
+        public Raster getTile(int tileX, int tileY) {
+            return getStrip(tileY);
+        }
+
+        @Override
+        public Vector<RenderedImage> getSources() {
+            return null;
+        }
+
+        @Override
+        public Object getProperty(String name) {
+            return Image.UndefinedProperty;
+        }
+
+        @Override
+        public String[] getPropertyNames() {
+            return null;
+        }
+
+        @Override
+        public ColorModel getColorModel() {
+            return colorModel;
+        }
+
+        @Override
+        public SampleModel getSampleModel() {
+            return sampleModel;
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public int getMinX() {
+            return 0;
+        }
+
+        @Override
+        public int getMinY() {
+            return 0;
+        }
+
+        @Override
+        public int getNumXTiles() {
+            return 1;
+        }
+
+        @Override
+        public int getNumYTiles() {
+            return stripCount;
+        }
+
+        @Override
+        public int getMinTileX() {
+            return 0;
+        }
+
+        @Override
+        public int getMinTileY() {
+            return 0;
+        }
+
+        @Override
+        public int getTileWidth() {
+            return width;
+        }
+
+        @Override
+        public int getTileHeight() {
+            return stripRows;
+        }
+
+        @Override
+        public int getTileGridXOffset() {
+            return 0;
+        }
+
+        @Override
+        public int getTileGridYOffset() {
+            return 0;
+        }
+    }
+
+    @Inject
+    public void setStripRows(@Value("${imagechallenge.tiled.rows}") int stripRows) {
+        this.stripRows = stripRows;
+    }
+
+    @Inject
+    public void setWorkers(@Value("${imagechallenge.tiled.workers}") int workers) {
+        this.workers = workers;
+    }
+
+    @Inject
+    public void setThresholdPixels(@Value("${imagechallenge.tiled.threshold}") long thresholdPixels) {
+        this.thresholdPixels = thresholdPixels;
+    }
+
+    @Inject
+    public void setImageEncoder(ImageEncoder imageEncoder) {
+        this.imageEncoder = imageEncoder;
+    }
+}
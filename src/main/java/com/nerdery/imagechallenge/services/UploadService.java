@@ -0,0 +1,204 @@
+package com.nerdery.imagechallenge.services;
+
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+import com.google.common.io.CountingInputStream;
+import com.nerdery.imagechallenge.services.filters.PixelBuffer;
+import com.nerdery.imagechallenge.services.filters.PixelLayout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.inject.Inject;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decodes images uploaded with a request straight from the request stream, rather than collecting the upload into a
+ * byte array first.<p/>
+ *
+ * The dimensions are read from the image header before anything else, and images with more pixels than the
+ * configured maximum are turned away before a single pixel is decoded, so an oversized upload costs a few kilobytes
+ * of reading instead of a huge raster. The bytes are hashed as they stream past, so repeated uploads of the same image
+ * share cached results the same way repeated requests for the source image do.
+ */
+@Service
+public class UploadService {
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    private long maxPixels;
+    private long maxBytes;
+
+    /**
+     * Read the upload's header and check its dimensions, without decoding any pixels. This is cheap enough to do on the
+     * request thread, so an oversized or unrecognized upload is turned away before it waits for a filter thread; the
+     * decode itself is left to {@link Upload#decode()}.<p/>
+     *
+     * The upload owns the stream from here on, and closes it once it has been decoded or closed.
+     *
+     * @throws ImageTooLargeException If the image has too many pixels or the upload too many bytes.
+     * @throws IllegalArgumentException If the upload isn't an image that can be decoded.
+     */
+    public Upload open(InputStream body) throws IOException {
+        // one byte past the limit is enough to tell that the upload is over it
+        CountingInputStream counted = new CountingInputStream(ByteStreams.limit(body, maxBytes + 1));
+        HashingInputStream hashed = new HashingInputStream(Hashing.sha256(), counted);
+        ImageInputStream input = new MemoryCacheImageInputStream(hashed);
+        ImageReader reader = null;
+        try {
+            reader = ImageReaders.find(input).orElseThrow(() -> rejectUnreadable(counted, "Unrecognized image format"));
+            long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+            if (pixels > maxPixels) {
+                rejected.incrementAndGet();
+                throw new ImageTooLargeException("The image has " + pixels + " pixels; at most " + maxPixels + " are accepted");
+            }
+            return new Upload(body, counted, hashed, input, reader);
+        } catch (IIOException e) {
+            close(body, input, reader);
+            throw rejectUnreadable(counted, "Unable to read the image header: " + e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            close(body, input, reader);
+            throw e;
+        }
+    }
+
+    private static void close(InputStream body, ImageInputStream input, ImageReader reader) {
+        if (reader != null) {
+            reader.dispose();
+        }
+        Closeables.closeQuietly(body);
+        try {
+            input.close();
+        } catch (IOException e) {
+            // only the in-memory cache is closed, which can't fail in a way that matters
+        }
+    }
+
+    /**
+     * A truncated upload can't be decoded either, so check the size first to report the real problem.
+     */
+    private IllegalArgumentException rejectUnreadable(CountingInputStream counted, String message) {
+        checkByteCount(counted);
+        rejected.incrementAndGet();
+        return new IllegalArgumentException(message);
+    }
+
+    private void checkByteCount(CountingInputStream counted) {
+        if (counted.getCount() > maxBytes) {
+            rejected.incrementAndGet();
+            throw new ImageTooLargeException("The upload is larger than " + maxBytes + " bytes");
+        }
+    }
+
+    public long getAccepted() {
+        return accepted.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * An upload whose header has been checked, waiting to be decoded.
+     */
+    public class Upload implements Closeable {
+        private final InputStream body;
+        private final CountingInputStream counted;
+        private final HashingInputStream hashed;
+        private final ImageInputStream input;
+        private final ImageReader reader;
+
+        private Upload(InputStream body, CountingInputStream counted, HashingInputStream hashed, ImageInputStream input,
+                ImageReader reader) {
+            this.body = body;
+            this.counted = counted;
+            this.hashed = hashed;
+            this.input = input;
+            this.reader = reader;
+        }
+
+        /**
+         * Decode the image and read the rest of the upload, then close it.
+         *
+         * @throws ImageTooLargeException If the upload has too many bytes.
+         * @throws IllegalArgumentException If the image can't be decoded.
+         */
+        public ImageSource decode() throws IOException {
+            BufferedImage image;
+            try {
+                try {
+                    image = reader.read(0);
+                } catch (IIOException e) {
+                    throw rejectUnreadable(counted, "Unable to decode the image: " + e.getMessage());
+                }
+                // anything after the end of the image is part of the upload too, and of its hash
+                ByteStreams.copy(hashed, ByteStreams.nullOutputStream());
+                checkByteCount(counted);
+            } finally {
+                close();
+            }
+            accepted.incrementAndGet();
+
+            // filters are written for the RGB layouts photos decode to, so convert anything else, like indexed GIFs
+            BufferedImage standardImage = PixelLayout.forImageType(image.getType()) == null
+                    ? PixelBuffer.normalize(image).getImage() : image;
+            return new UploadedImage(standardImage, hashed.hash().toString());
+        }
+
+        /**
+         * Give up on the upload without decoding it.
+         */
+        @Override
+        public void close() {
+            UploadService.close(body, input, reader);
+        }
+    }
+
+    /**
+     * An image decoded from an upload. It is only used for the request that uploaded it.
+     */
+    private static class UploadedImage implements ImageSource {
+        private final BufferedImage image;
+        private final String contentHash;
+
+        UploadedImage(BufferedImage image, String contentHash) {
+            this.image = image;
+            this.contentHash = contentHash;
+        }
+
+        @Override
+        public String getContentHash() {
+            return contentHash;
+        }
+
+        @Override
+        public long getPixelCount() {
+            return (long) image.getWidth() * image.getHeight();
+        }
+
+        @Override
+        public BufferedImage getImage() {
+            return image;
+        }
+    }
+
+    @Inject
+    public void setMaxPixels(@Value("${imagechallenge.upload.maxpixels}") long maxPixels) {
+        this.maxPixels = maxPixels;
+    }
+
+    @Inject
+    public void setMaxBytes(@Value("${imagechallenge.upload.maxbytes}") long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+}
@@ -0,0 +1,16 @@
+package com.nerdery.imagechallenge.services.filters;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Softens the image with a 5x5 Gaussian blur. The kernel is the binomial approximation, <code>[1 4 6 4 1] / 16</code>
+ * across and down.
+ */
+@Component
+public class BlurFilter extends ConvolutionFilter {
+    private static final float[] BINOMIAL = {1 / 16f, 4 / 16f, 6 / 16f, 4 / 16f, 1 / 16f};
+
+    public BlurFilter() {
+        super("Blur", ConvolutionKernel.separable(BINOMIAL, BINOMIAL));
+    }
+}
@@ -0,0 +1,202 @@
+package com.nerdery.imagechallenge.services.filters;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Convolves the color channels of an image with a {@link ConvolutionKernel}. Subclass it with a fixed kernel to add a
+ * filter.<p/>
+ *
+ * The image is cut into strips of rows that are convolved in parallel. Separable kernels are applied as a horizontal
+ * pass followed by a vertical pass; other kernels in a single pass. Pixels past the edges of the image repeat the
+ * nearest edge pixel, so the edges come out like the rest of the image instead of fading to black. Channels are
+ * rounded to the nearest value and clamped to 0-255, and alpha is carried over from the source pixel.<p/>
+ *
+ * A {@link PointFilter} can be fused onto the end with {@link #thenApply(PointFilter)}, so it runs on each pixel as
+ * it is written instead of in a pass of its own. Pipelines do that for point filters that follow a convolution.
+ */
+public class ConvolutionFilter implements PixelFilter {
+    private static final int STRIP_ROWS = 64;
+
+    private final String name;
+    private final ConvolutionKernel kernel;
+    private final PointFilter after;
+
+    public ConvolutionFilter(String name, ConvolutionKernel kernel) {
+        this(name, kernel, null);
+    }
+
+    private ConvolutionFilter(String name, ConvolutionKernel kernel, PointFilter after) {
+        this.name = name;
+        this.kernel = kernel;
+        this.after = after;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getKernelRadius() {
+        return kernel.getRadius();
+    }
+
+    public ConvolutionKernel getKernel() {
+        return kernel;
+    }
+
+    /**
+     * @return A filter that applies the point filter to every pixel this filter produces, in the same pass.
+     */
+    public ConvolutionFilter thenApply(PointFilter next) {
+        PointFilter fused = after == null ? next : new PointFilter() {
+            @Override
+            public String getName() {
+                return after.getName() + "+" + next.getName();
+            }
+
+            @Override
+            public int filterPixel(int pixel) {
+                return next.filterPixel(after.filterPixel(pixel));
+            }
+        };
+        return new ConvolutionFilter(name + "+" + next.getName(), kernel, fused);
+    }
+
+    /**
+     * Convolve the source into the target, which must be a different buffer.
+     */
+    @Override
+    public void transform(PixelBuffer source, PixelBuffer target) {
+        int height = source.getHeight();
+        int strips = (height + STRIP_ROWS - 1) / STRIP_ROWS;
+        IntStream.range(0, strips).parallel().forEach(strip -> {
+            int fromRow = strip * STRIP_ROWS;
+            new Strip(source, target, fromRow, Math.min(height, fromRow + STRIP_ROWS)).convolve();
+        });
+    }
+
+    /**
+     * One strip of rows being convolved. The source rows the strip needs, including the rows above and below that the
+     * kernel reaches, are first unpacked into one padded <code>float</code> plane per channel, with the edge pixels
+     * repeated into the padding. The convolution itself then runs along whole rows of those planes with no edge
+     * checks, accumulating each output row before packing it into the target.
+     */
+    private class Strip {
+        private final int[] sourcePixels;
+        private final int[] targetPixels;
+        private final int width;
+        private final int fromRow;
+        private final int toRow;
+        private final int radiusX;
+        private final int radiusY;
+        private final int paddedWidth;
+        private final float[][] planes = new float[3][];
+        private final float[][] sums = new float[3][];
+
+        Strip(PixelBuffer source, PixelBuffer target, int fromRow, int toRow) {
+            this.sourcePixels = source.getInts();
+            this.targetPixels = target.getInts();
+            this.width = source.getWidth();
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.radiusX = kernel.getWidth() / 2;
+            this.radiusY = kernel.getHeight() / 2;
+            this.paddedWidth = width + 2 * radiusX;
+
+            int rows = toRow - fromRow + 2 * radiusY;
+            for (int channel = 0; channel < 3; channel++) {
+                planes[channel] = new float[rows * paddedWidth];
+                sums[channel] = new float[width];
+            }
+            unpack(source.getHeight(), rows);
+        }
+
+        private void unpack(int height, int rows) {
+            for (int r = 0; r < rows; r++) {
+                int rowStart = clamp(fromRow - radiusY + r, height) * width;
+                int planeStart = r * paddedWidth;
+                for (int x = -radiusX; x < width + radiusX; x++) {
+                    int pixel = sourcePixels[rowStart + clamp(x, width)];
+                    planes[0][planeStart + radiusX + x] = (pixel >> 16) & 0xFF;
+                    planes[1][planeStart + radiusX + x] = (pixel >> 8) & 0xFF;
+                    planes[2][planeStart + radiusX + x] = pixel & 0xFF;
+                }
+            }
+        }
+
+        void convolve() {
+            if (kernel.isSeparable()) {
+                convolveRows();
+            }
+            for (int y = fromRow; y < toRow; y++) {
+                for (int channel = 0; channel < 3; channel++) {
+                    float[] plane = planes[channel];
+                    float[] sum = sums[channel];
+                    Arrays.fill(sum, 0);
+                    if (kernel.isSeparable()) {
+                        // the rows already hold the horizontal pass, left-aligned
+                        float[] column = kernel.getColumn();
+                        for (int k = 0; k < column.length; k++) {
+                            accumulate(sum, plane, (y - fromRow + k) * paddedWidth, column[k]);
+                        }
+                    } else {
+                        for (int ky = 0; ky < kernel.getHeight(); ky++) {
+                            for (int kx = 0; kx < kernel.getWidth(); kx++) {
+                                accumulate(sum, plane, (y - fromRow + ky) * paddedWidth + kx, kernel.get(kx, ky));
+                            }
+                        }
+                    }
+                }
+                int rowStart = y * width;
+                for (int x = 0; x < width; x++) {
+                    targetPixels[rowStart + x] = finish(sourcePixels[rowStart + x], sums[0][x], sums[1][x], sums[2][x]);
+                }
+            }
+        }
+
+        /**
+         * Replace every row of the planes with its convolution with the kernel's row vector. The results are written
+         * from the start of each row, which is safe since each one only reads from its own position onwards.
+         */
+        private void convolveRows() {
+            float[] row = kernel.getRow();
+            float[] sum = new float[width];
+            for (float[] plane : planes) {
+                for (int start = 0; start < plane.length; start += paddedWidth) {
+                    Arrays.fill(sum, 0);
+                    for (int k = 0; k < row.length; k++) {
+                        accumulate(sum, plane, start + k, row[k]);
+                    }
+                    System.arraycopy(sum, 0, plane, start, width);
+                }
+            }
+        }
+
+        private void accumulate(float[] sum, float[] plane, int offset, float weight) {
+            if (weight == 0) {
+                return;
+            }
+            for (int x = 0; x < width; x++) {
+                sum[x] += plane[offset + x] * weight;
+            }
+        }
+    }
+
+    /**
+     * Pack the channels with the source pixel's alpha, and run the fused point filter if there is one.
+     */
+    private int finish(int sourcePixel, float red, float green, float blue) {
+        int pixel = (sourcePixel & 0xFF000000) | (channel(red) << 16) | (channel(green) << 8) | channel(blue);
+        return after == null ? pixel : after.filterPixel(pixel);
+    }
+
+    private static int channel(float value) {
+        return value <= 0 ? 0 : value >= 255 ? 255 : (int) (value + 0.5f);
+    }
+
+    private static int clamp(int position, int size) {
+        return position < 0 ? 0 : position >= size ? size - 1 : position;
+    }
+}
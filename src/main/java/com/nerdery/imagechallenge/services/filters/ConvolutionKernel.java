@@ -0,0 +1,127 @@
+package com.nerdery.imagechallenge.services.filters;
+
+import java.util.Arrays;
+
+/**
+ * A convolution kernel with odd dimensions, centered on the pixel being computed.<p/>
+ *
+ * When the kernel is the outer product of a column and a row vector it is separable, and a {@link ConvolutionFilter}
+ * can apply it as a horizontal pass followed by a vertical pass: <code>w + h</code> multiplications per pixel instead
+ * of <code>w * h</code>. That is detected here when the kernel is created.
+ */
+public class ConvolutionKernel {
+    private static final float SEPARABLE_TOLERANCE = 1e-6f;
+
+    private final int width;
+    private final int height;
+    private final float[] matrix;
+    private final float[] row;
+    private final float[] column;
+
+    private ConvolutionKernel(int width, int height, float[] matrix) {
+        this.width = width;
+        this.height = height;
+        this.matrix = matrix;
+
+        // if the kernel is separable, the row through its largest element is the row vector scaled by the column
+        // vector's element in that row
+        int pivot = 0;
+        for (int i = 1; i < matrix.length; i++) {
+            if (Math.abs(matrix[i]) > Math.abs(matrix[pivot])) {
+                pivot = i;
+            }
+        }
+        float[] row = new float[width];
+        float[] column = new float[height];
+        float scale = matrix[pivot];
+        for (int x = 0; x < width; x++) {
+            row[x] = scale == 0 ? 0 : matrix[pivot / width * width + x] / scale;
+        }
+        for (int y = 0; y < height; y++) {
+            column[y] = matrix[y * width + pivot % width];
+        }
+        this.row = isOuterProduct(column, row) ? row : null;
+        this.column = this.row != null ? column : null;
+    }
+
+    /**
+     * @param width The kernel width, which must be odd.
+     * @param height The kernel height, which must be odd.
+     * @param matrix The weights, row by row.
+     */
+    public static ConvolutionKernel of(int width, int height, float... matrix) {
+        if (width % 2 == 0 || height % 2 == 0 || width < 1 || height < 1) {
+            throw new IllegalArgumentException("Kernel dimensions must be odd, not " + width + "x" + height);
+        }
+        if (matrix.length != width * height) {
+            throw new IllegalArgumentException("A " + width + "x" + height + " kernel needs " + width * height
+                    + " weights, not " + matrix.length);
+        }
+        return new ConvolutionKernel(width, height, Arrays.copyOf(matrix, matrix.length));
+    }
+
+    /**
+     * @return The separable kernel with the given column and row vectors, which must have odd lengths.
+     */
+    public static ConvolutionKernel separable(float[] column, float[] row) {
+        float[] matrix = new float[column.length * row.length];
+        for (int y = 0; y < column.length; y++) {
+            for (int x = 0; x < row.length; x++) {
+                matrix[y * row.length + x] = column[y] * row[x];
+            }
+        }
+        return of(row.length, column.length, matrix);
+    }
+
+    private boolean isOuterProduct(float[] column, float[] row) {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                float expected = matrix[y * width + x];
+                if (Math.abs(column[y] * row[x] - expected) > SEPARABLE_TOLERANCE * Math.max(1, Math.abs(expected))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return The larger of the horizontal and vertical radii.
+     */
+    public int getRadius() {
+        return Math.max(width, height) / 2;
+    }
+
+    public boolean isSeparable() {
+        return row != null;
+    }
+
+    /**
+     * @return The weight at the given position, where (0, 0) is the top left.
+     */
+    float get(int x, int y) {
+        return matrix[y * width + x];
+    }
+
+    /**
+     * @return The row vector of a separable kernel.
+     */
+    float[] getRow() {
+        return row;
+    }
+
+    /**
+     * @return The column vector of a separable kernel.
+     */
+    float[] getColumn() {
+        return column;
+    }
+}
@@ -0,0 +1,71 @@
+package com.nerdery.imagechallenge.services.filters;
+
+/**
+ * Describes a numeric parameter a filter accepts from the request, like the brush radius of an oil paint filter: its
+ * name, whether it is a whole number, the range it must fall in and the value the filter uses when it isn't given.
+ */
+public class FilterParameter {
+    private final String name;
+    private final boolean integer;
+    private final double min;
+    private final double max;
+    private final Number defaultValue;
+
+    private FilterParameter(String name, boolean integer, double min, double max, Number defaultValue) {
+        if (defaultValue.doubleValue() < min || defaultValue.doubleValue() > max) {
+            throw new IllegalArgumentException("The default " + name + " of " + defaultValue + " is outside "
+                    + min + " to " + max);
+        }
+        this.name = name;
+        this.integer = integer;
+        this.min = min;
+        this.max = max;
+        this.defaultValue = defaultValue;
+    }
+
+    public static FilterParameter ofInt(String name, int min, int max, int defaultValue) {
+        return new FilterParameter(name, true, min, max, defaultValue);
+    }
+
+    public static FilterParameter ofDouble(String name, double min, double max, double defaultValue) {
+        return new FilterParameter(name, false, min, max, defaultValue);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isInteger() {
+        return integer;
+    }
+
+    public Number getDefaultValue() {
+        return defaultValue;
+    }
+
+    /**
+     * @throws IllegalArgumentException If the value isn't a number of the right kind, or is out of range.
+     */
+    public Number parse(String value) {
+        Number parsed;
+        try {
+            parsed = integer ? (Number) Integer.valueOf(value.trim()) : (Number) Double.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            parsed = null;
+        }
+        if (parsed == null || Double.isNaN(parsed.doubleValue()) || parsed.doubleValue() < min || parsed.doubleValue() > max) {
+            throw new IllegalArgumentException(name + " must be " + (integer ? "a whole number" : "a number")
+                    + " between " + format(min) + " and " + format(max));
+        }
+        return parsed;
+    }
+
+    private String format(double bound) {
+        return integer ? String.valueOf((int) bound) : String.valueOf(bound);
+    }
+
+    @Override
+    public String toString() {
+        return name + "=" + defaultValue + " [" + format(min) + ", " + format(max) + "]";
+    }
+}
@@ -0,0 +1,92 @@
+package com.nerdery.imagechallenge.services.filters;
+
+import com.google.common.collect.ImmutableSortedMap;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The parameter values given with a request, already validated against the {@link FilterParameter}s of the filters
+ * they are for. Parameters that weren't given aren't stored, so each filter falls back to its own default.<p/>
+ *
+ * Values are kept as parsed numbers, so <code>5.5</code> and <code>5.50</code> are the same parameters and share a
+ * cached result.
+ */
+public class FilterParameters {
+    public static final FilterParameters NONE = new FilterParameters(ImmutableSortedMap.of());
+
+    // keeps filter parameters apart from the encoder options and other settings they share a cache key with
+    private static final String KEY_PREFIX = "filter.";
+
+    private final SortedMap<String, Number> values;
+
+    private FilterParameters(SortedMap<String, Number> values) {
+        this.values = values;
+    }
+
+    /**
+     * Pick the values for the given parameters out of the request, ignoring anything else in it. A name several
+     * filters accept is one value shared by all of them, and must be valid for each.
+     *
+     * @throws IllegalArgumentException If a value isn't valid for a parameter it is given for.
+     */
+    public static FilterParameters parse(Iterable<FilterParameter> parameters, Map<String, String> request) {
+        SortedMap<String, Number> values = new TreeMap<>();
+        for (FilterParameter parameter : parameters) {
+            String value = request.get(parameter.getName());
+            if (value != null) {
+                Number parsed = parameter.parse(value);
+                values.putIfAbsent(parameter.getName(), parsed);
+            }
+        }
+        return values.isEmpty() ? NONE : new FilterParameters(ImmutableSortedMap.copyOfSorted(values));
+    }
+
+    public boolean isEmpty() {
+        return values.isEmpty();
+    }
+
+    /**
+     * @return The value given for the parameter, or its default.
+     */
+    public int getInt(FilterParameter parameter) {
+        return get(parameter).intValue();
+    }
+
+    /**
+     * @return The value given for the parameter, or its default.
+     */
+    public double getDouble(FilterParameter parameter) {
+        return get(parameter).doubleValue();
+    }
+
+    private Number get(FilterParameter parameter) {
+        return values.getOrDefault(parameter.getName(), parameter.getDefaultValue());
+    }
+
+    /**
+     * @return The values given, as result cache key parameters. The names are prefixed with <code>filter.</code>, so a
+     * filter parameter can never clash with an encoder option of the same name, like <code>quality</code>.
+     */
+    public Map<String, String> toParameters() {
+        ImmutableSortedMap.Builder<String, String> parameters = ImmutableSortedMap.naturalOrder();
+        values.forEach((name, value) -> parameters.put(KEY_PREFIX + name, value.toString()));
+        return parameters.build();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof FilterParameters && values.equals(((FilterParameters) other).values);
+    }
+
+    @Override
+    public int hashCode() {
+        return values.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return values.toString();
+    }
+}
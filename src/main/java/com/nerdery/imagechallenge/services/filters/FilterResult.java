@@ -1,24 +1,54 @@
 package com.nerdery.imagechallenge.services.filters;
 
 import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Josh Klun (jklun@nerdery.com)
  */
 public class FilterResult {
-    private Long resultTime;
+    private long elapsedNanos;
     private BufferedImage outputImage;
+    private List<StageTime> stageTimes;
 
-    public FilterResult(Long resultTime, BufferedImage outputImage) {
-        this.resultTime = resultTime;
+    public FilterResult(long elapsedNanos, BufferedImage outputImage) {
+        this(elapsedNanos, outputImage, Collections.emptyList());
+    }
+
+    public FilterResult(long elapsedNanos, BufferedImage outputImage, List<StageTime> stageTimes) {
+        this.elapsedNanos = elapsedNanos;
         this.outputImage = outputImage;
+        this.stageTimes = stageTimes;
+    }
+
+    /**
+     * @return The elapsed time of the whole filter in nanoseconds, including converting between pixel layouts.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
     }
 
+    /**
+     * @return The elapsed time in whole milliseconds.
+     */
     public Long getResultTime() {
-        return resultTime;
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
     }
 
     public BufferedImage getOutputImage() {
         return outputImage;
     }
+
+    /**
+     * @return The time taken by each stage, in order. Empty unless the result came from a pipeline.
+     */
+    public List<StageTime> getStageTimes() {
+        return stageTimes;
+    }
+
+    public long getPixelCount() {
+        return (long) outputImage.getWidth() * outputImage.getHeight();
+    }
 }
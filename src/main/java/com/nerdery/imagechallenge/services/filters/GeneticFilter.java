@@ -1,101 +1,265 @@
 package com.nerdery.imagechallenge.services.filters;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.nerdery.imagechallenge.services.FilterService;
 import com.nerdery.imagechallenge.genetic.Candidate;
+import com.nerdery.imagechallenge.genetic.Evolution;
+import com.nerdery.imagechallenge.genetic.EvolutionResult;
+import com.nerdery.imagechallenge.genetic.Evolvable;
+import com.nerdery.imagechallenge.genetic.IslandOptions;
 import com.nerdery.imagechallenge.genetic.Population;
-import org.reflections.Reflections;
+import com.nerdery.imagechallenge.genetic.ProgressListener;
+import com.nerdery.imagechallenge.genetic.StoppingCriteria;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.inject.Provider;
 import java.awt.image.BufferedImage;
 import java.security.SecureRandom;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
 
 /**
  * @author Patrick Garrity
  *
  * Filter implementation that takes a random filter and attempts to evolve it from the base image.
  *
- * TODO: Support the following operations:
- * - All known filters
- * - Specific filter
+ * A run stops after a fixed number of generations, a wall-clock budget, or once the best score stops improving,
+ * whichever comes first; see the <code>genetic.*</code> properties. The population can be split into islands that
+ * evolve in parallel and trade their best candidates every few generations.<p/>
+ *
+ * The filter to evolve towards is picked from the {@link FilterService}'s filters, and its output for a source is
+ * cached under the source's content hash, so later runs against the same source skip running it again.<p/>
+ *
+ * Candidates take {@link Population#BYTES_PER_PIXEL} bytes per pixel each, so besides the cap on the number of
+ * candidates there is one on the memory a run's population may take, <code>genetic.maxbytes</code>. The default of
+ * 2 GB holds about 170 candidates at 1920x1080. A run with the configured island options is shrunk to fit under it;
+ * island options a caller asks for are turned down instead.<p/>
+ *
+ * Each run is driven by a single seed, which picks the filter and seeds the population, so a run can be repeated
+ * exactly. The seed comes from the <code>genetic.seed</code> property when set, and is otherwise drawn at random and
+ * logged.
+ *
+ * TODO: Let a request name the filter to evolve towards instead of leaving it to the seed.
  */
 @Component
-public class GeneticFilter implements ImageFilter {
+public class GeneticFilter implements InputKeyedFilter {
     private static final Logger LOGGER = LoggerFactory.getLogger(GeneticFilter.class);
-    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final SecureRandom SEEDS = new SecureRandom();
+
+    private Optional<Long> seed = Optional.empty();
+    private int maxGenerations;
+    private long timeBudgetMillis;
+    private int plateauGenerations;
+    private double plateauImprovement;
+    private StoppingCriteria criteria;
+    private int islands;
+    private int islandSize;
+    private int migrationInterval;
+    private int migrants;
+    private long maxCandidates;
+    private long maxBytes;
+    private IslandOptions islandOptions;
+    private long referenceCacheBytes;
+    private Cache<String, int[]> references;
+    private Provider<FilterService> filterService;
+
+    /**
+     * The filters a run can evolve towards, by name. They come from the {@link FilterService}, which can only be
+     * looked up once this filter has been created, since this filter is one of its filters.
+     */
+    private final Supplier<Map<String, ImageFilter>> filters = Suppliers.memoize(this::loadFilters);
 
-    private static final Map<String, ImageFilter> FILTERS = new HashMap<>();
+    public GeneticFilter() {}
 
-    private static final int POPULATION_SIZE = 50;
-    private static final int GENERATIONS = 800;
+    @PostConstruct
+    private void configureFilter() {
+        criteria = new StoppingCriteria(maxGenerations, timeBudgetMillis, 0, plateauGenerations, plateauImprovement);
+        islandOptions = IslandOptions.of(islands, islandSize, migrationInterval, migrants);
+        references = CacheBuilder.newBuilder()
+                .maximumWeight(referenceCacheBytes)
+                .<String, int[]>weigher((key, reference) -> reference.length * Integer.BYTES)
+                .recordStats()
+                .build();
+    }
 
     /**
-     * When we load this class we want to use reflection to find every other image filter and attempt to instantiate
-     * those filters.
+     * Every deterministic filter besides this one, in name order so the same seed always picks the same filter.
      */
-    static {
-        final Reflections reflections = new Reflections("com.nerdery.imagechallenge.services.filters");
-        reflections.getSubTypesOf(ImageFilter.class)
-                .stream()
-                .filter(c -> c.getAnnotation(Component.class) != null)
-                .filter(c -> c != GeneticFilter.class)
-                .map(c -> {
-                    try {
-                        return c.newInstance();
-                    } catch (final Exception e) {
-                        LOGGER.warn("Unable to instantiate the filter class {}", c.getName());
-                        return null;
-                    }
-                })
-                .filter(imageFilter -> imageFilter != null)
-                .forEach(imageFilter -> FILTERS.put(imageFilter.getName(), imageFilter));
-
-        LOGGER.info("Successfully loaded {} filters.", FILTERS.size());
-        FILTERS.forEach((k, v) -> LOGGER.info("Loaded filter: {}", k));
+    private Map<String, ImageFilter> loadFilters() {
+        final Map<String, ImageFilter> loaded = new TreeMap<>();
+        filterService.get().getFilters().stream()
+                .filter(ImageFilter::isDeterministic)
+                .filter(filter -> filter != this)
+                .forEach(filter -> loaded.put(filter.getName(), filter));
+
+        LOGGER.info("Evolving towards {} filters: {}", loaded.size(), loaded.keySet());
+        return loaded;
     }
 
-    public GeneticFilter() {}
+    /**
+     * @return The configured island options with any of the given values replaced, or <code>null</code> to keep the
+     * configured one.
+     * @throws IllegalArgumentException If the result is out of range, or has more candidates in total than
+     * <code>genetic.maxcandidates</code>.
+     */
+    public IslandOptions islandOptions(Integer islands, Integer islandSize, Integer migrationInterval, Integer migrants) {
+        final IslandOptions options = islandOptions.with(islands, islandSize, migrationInterval, migrants);
+        if (options.getTotalCandidates() > maxCandidates) {
+            throw new IllegalArgumentException("At most " + maxCandidates + " candidates in total are allowed");
+        }
+        return options;
+    }
 
     @Override
     public String getName() {
         return "genetic";
     }
 
+    @Override
+    public boolean isDeterministic() {
+        return false;
+    }
+
     @Override
     public BufferedImage transform(BufferedImage sourceImage) {
-        final ImageFilter filter = chooseRandomFilter();
-        LOGGER.info("Selected filter {}", filter.getName());
+        return transform(sourceImage, FilterParameters.NONE, null);
+    }
 
-        final BufferedImage referenceImage = filter.transform(sourceImage);
-        LOGGER.info("Reference image has {} width and {} height", referenceImage.getWidth(), referenceImage.getHeight());
+    @Override
+    public BufferedImage transform(BufferedImage sourceImage, FilterParameters parameters, String inputKey) {
+        final long pixels = (long) sourceImage.getWidth() * sourceImage.getHeight();
+        final IslandOptions options = islandOptions.limitedTo(maxBytes / (pixels * Population.BYTES_PER_PIXEL));
+        final EvolutionResult result = evolve(sourceImage, inputKey, criteria, options, 1, ProgressListener.NONE);
+        return toImage(result.getBest(), sourceImage);
+    }
 
-        final int [] reference = getImageData(referenceImage);
+    /**
+     * Evolve towards a randomly chosen filter's output until the criteria are met.
+     *
+     * @param sourceImage The image to filter.
+     * @param sourceKey Identifies the source image's content, like its content hash, so the reference image can be
+     *                  cached; or <code>null</code> to compute it without caching.
+     * @param stoppingCriteria When to stop.
+     * @param options How many islands of how many candidates to evolve.
+     * @param reportEvery How many generations between progress reports.
+     * @param listener Hears about progress, and can stop the run early.
+     * @throws IllegalArgumentException If the population would take more than <code>genetic.maxbytes</code>.
+     */
+    public EvolutionResult evolve(final BufferedImage sourceImage, final String sourceKey, final StoppingCriteria stoppingCriteria,
+                                  final IslandOptions options, final int reportEvery, final ProgressListener listener) {
+        checkPopulationSize(options, sourceImage);
+        final long runSeed = seed.orElseGet(SEEDS::nextLong);
+        final SplittableRandom random = new SplittableRandom(runSeed);
+        final ImageFilter filter = chooseRandomFilter(random);
+        LOGGER.info("Selected filter {} with seed {}", filter.getName(), runSeed);
+
+        final int[] start = getImageData(sourceImage);
+        final int[] reference = getReferenceData(sourceImage, sourceKey, filter);
 
-        LOGGER.info("Creating a new population of size {}", POPULATION_SIZE);
-        final Population population = new Population(POPULATION_SIZE);
-        population.resetPopulation(getImageData(sourceImage));
+        LOGGER.info("Creating a new population of {}", options);
+        final Evolvable population = options.createPopulation(random.nextLong());
+        population.resetPopulation(start, reference);
 
-        LOGGER.info("Executing {} generations of evolution", GENERATIONS);
-        for (int i = 0; i < GENERATIONS; i++) {
-            population.generation(reference);
-            LOGGER.info("Completed generation {}", i);
+        LOGGER.info("Executing up to {} generations of evolution", stoppingCriteria.getMaxGenerations());
+        final EvolutionResult result = Evolution.evolve(population, stoppingCriteria, reportEvery, listener);
+        LOGGER.info("Selected candidate with score {} -- the goal score is 0.", result.getBest().getTotalScore());
+        return result;
+    }
+
+    /**
+     * @throws IllegalArgumentException If a population with these options would take more than
+     * <code>genetic.maxbytes</code> for this image.
+     */
+    public void checkPopulationSize(final IslandOptions options, final BufferedImage sourceImage) {
+        final long populationBytes = options.getTotalCandidates() * sourceImage.getWidth() * sourceImage.getHeight()
+                * Population.BYTES_PER_PIXEL;
+        if (populationBytes > maxBytes) {
+            throw new IllegalArgumentException("A population of " + options.getTotalCandidates() + " candidates of this image "
+                    + "needs " + populationBytes / (1024 * 1024) + " MB; at most " + maxBytes / (1024 * 1024) + " MB is allowed");
         }
+    }
 
-        final Candidate selectedCandidate = population.topScore();
-        LOGGER.info("Selected candidate with score {} -- the goal score is 0.", selectedCandidate.getTotalScore());
+    /**
+     * @return The configured stopping criteria for a run.
+     */
+    public StoppingCriteria getStoppingCriteria() {
+        return criteria;
+    }
 
-        final BufferedImage targetImage = new BufferedImage(sourceImage.getWidth(), sourceImage.getHeight(), sourceImage.getType());
-        setImageData(targetImage, selectedCandidate.getData());
+    public long getReferenceCacheSize() {
+        return references.size();
+    }
 
-        return targetImage;
+    public CacheStats getReferenceCacheStats() {
+        return references.stats();
     }
 
-    private ImageFilter chooseRandomFilter() {
-        final int choice = RANDOM.nextInt(FILTERS.size());
+    /**
+     * @return The configured island options for a run.
+     */
+    public IslandOptions getIslandOptions() {
+        return islandOptions;
+    }
+
+    /**
+     * Copy a candidate's pixels into a new image the size of the source image, keeping alpha only if the source has
+     * it.
+     */
+    public static BufferedImage toImage(final Candidate candidate, final BufferedImage sourceImage) {
+        final PixelLayout layout = sourceImage.getColorModel().hasAlpha() ? PixelLayout.INT_ARGB : PixelLayout.INT_RGB;
+        final PixelBuffer target = PixelBuffer.create(sourceImage.getWidth(), sourceImage.getHeight(), layout);
+        candidate.copyPixelsTo(target.getInts());
+        return target.getImage();
+    }
+
+    /**
+     * Get the reference data a run evolves towards: the chosen filter's output for this source. It only depends on the
+     * source and the filter, so when the source's content is known it is cached and reused by later runs.
+     *
+     * @param sourceImage The source image.
+     * @param sourceKey Identifies the source image's content, or <code>null</code> if it isn't known.
+     * @param filter The filter to evolve towards.
+     */
+    private int[] getReferenceData(final BufferedImage sourceImage, final String sourceKey, final ImageFilter filter) {
+        if (sourceKey == null) {
+            return renderReference(sourceImage, filter);
+        }
+        final String key = filter.getName() + "@" + sourceKey;
+        final int[] cached = references.getIfPresent(key);
+        if (cached != null) {
+            LOGGER.info("Reusing the cached reference image for {}", filter.getName());
+            return cached;
+        }
+        final int[] reference = renderReference(sourceImage, filter);
+        references.put(key, reference);
+        return reference;
+    }
+
+    private int[] renderReference(final BufferedImage sourceImage, final ImageFilter filter) {
+        final BufferedImage referenceImage = filter.transform(sourceImage);
+        LOGGER.info("Reference image has {} width and {} height", referenceImage.getWidth(), referenceImage.getHeight());
+        return getImageData(referenceImage);
+    }
+
+    /**
+     * Pick a filter, going through them in name order so the same seed always picks the same filter.
+     */
+    private ImageFilter chooseRandomFilter(final SplittableRandom random) {
+        final Map<String, ImageFilter> choices = filters.get();
+        final int choice = random.nextInt(choices.size());
         int i = 0;
-        for (Map.Entry<String, ImageFilter> entry : FILTERS.entrySet()) {
+        for (Map.Entry<String, ImageFilter> entry : choices.entrySet()) {
             if (i == choice) {
                 return entry.getValue();
             }
@@ -107,25 +271,88 @@ public class GeneticFilter implements ImageFilter {
         throw new IllegalArgumentException("Invalid random filter selected.");
     }
 
+    /**
+     * Get the pixels of the image as <code>0xAARRGGBB</code> values. The candidates copy the starting data and only
+     * read the reference data, so the normalized array can be used without copying it again.
+     */
     private int[] getImageData(final BufferedImage image) {
-        final int[] data = new int[image.getWidth() * image.getHeight()];
-        int i = 0;
-        for (int row = 0; row < image.getHeight(); row++) {
-            for (int col = 0; col < image.getWidth(); col++) {
-                data[i] = image.getRGB(col, row);
-                i++;
-            }
+        final PixelBuffer pixels = PixelBuffer.normalize(image);
+        if (pixels.getLayout() == PixelLayout.INT_ARGB) {
+            return pixels.getInts();
+        }
+
+        final int[] data = new int[pixels.getPixelCount()];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = pixels.getArgb(i);
         }
         return data;
     }
 
-    private void setImageData(final BufferedImage image, final int[] data) {
-        int i = 0;
-        for (int row = 0; row < image.getHeight(); row++) {
-            for (int col = 0; col < image.getWidth(); col++) {
-                image.setRGB(col, row, data[i]);
-                i++;
-            }
-        }
+    /**
+     * @param seed The seed for every run, or empty to draw a new seed for each run.
+     */
+    @Inject
+    public void setSeed(@Value("${genetic.seed:}") String seed) {
+        this.seed = seed.isEmpty() ? Optional.empty() : Optional.of(Long.parseLong(seed));
+    }
+
+    @Inject
+    public void setMaxGenerations(@Value("${genetic.generations}") int maxGenerations) {
+        this.maxGenerations = maxGenerations;
+    }
+
+    @Inject
+    public void setTimeBudgetMillis(@Value("${genetic.budgetms}") long timeBudgetMillis) {
+        this.timeBudgetMillis = timeBudgetMillis;
+    }
+
+    @Inject
+    public void setPlateauGenerations(@Value("${genetic.plateau.generations}") int plateauGenerations) {
+        this.plateauGenerations = plateauGenerations;
+    }
+
+    @Inject
+    public void setPlateauImprovement(@Value("${genetic.plateau.improvement}") double plateauImprovement) {
+        this.plateauImprovement = plateauImprovement;
+    }
+
+    @Inject
+    public void setIslands(@Value("${genetic.islands}") int islands) {
+        this.islands = islands;
+    }
+
+    @Inject
+    public void setIslandSize(@Value("${genetic.population}") int islandSize) {
+        this.islandSize = islandSize;
+    }
+
+    @Inject
+    public void setMigrationInterval(@Value("${genetic.migration.interval}") int migrationInterval) {
+        this.migrationInterval = migrationInterval;
+    }
+
+    @Inject
+    public void setMigrants(@Value("${genetic.migration.count}") int migrants) {
+        this.migrants = migrants;
+    }
+
+    @Inject
+    public void setMaxCandidates(@Value("${genetic.maxcandidates}") long maxCandidates) {
+        this.maxCandidates = maxCandidates;
+    }
+
+    @Inject
+    public void setMaxBytes(@Value("${genetic.maxbytes}") long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    @Inject
+    public void setReferenceCacheBytes(@Value("${genetic.referencecache.maxbytes}") long referenceCacheBytes) {
+        this.referenceCacheBytes = referenceCacheBytes;
+    }
+
+    @Inject
+    public void setFilterService(Provider<FilterService> filterService) {
+        this.filterService = filterService;
     }
 }
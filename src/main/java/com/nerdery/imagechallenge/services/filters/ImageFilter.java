@@ -1,13 +1,85 @@
 package com.nerdery.imagechallenge.services.filters;
 
 import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * @author Josh Klun (jklun@nerdery.com)
  */
 public interface ImageFilter {
 
+    /**
+     * The kernel radius of filters whose output pixels can depend on any input pixel.
+     */
+    int UNBOUNDED_RADIUS = -1;
+
     String getName();
 
     BufferedImage transform(BufferedImage sourceImage);
+
+    /**
+     * The parameters a request can tune this filter with. Filters that take parameters override
+     * {@link #transform(BufferedImage, FilterParameters)} and {@link #getKernelRadius(FilterParameters)}, with the
+     * plain versions using the defaults.
+     */
+    default List<FilterParameter> getParameters() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Transform the image with the given parameter values, which have been validated against
+     * {@link #getParameters()}.
+     */
+    default BufferedImage transform(BufferedImage sourceImage, FilterParameters parameters) {
+        return transform(sourceImage);
+    }
+
+    /**
+     * Whether the filter always produces the same output for the same input. Results of deterministic filters may be
+     * cached and shared between requests; filters that involve randomness should return <code>false</code>.
+     */
+    default boolean isDeterministic() {
+        return true;
+    }
+
+    /**
+     * How far, in pixels, an output pixel can be from the input pixels it depends on. Filters with a bounded radius can
+     * be run on tiles of an image that overlap by this many pixels.
+     *
+     * @return The radius, or {@link #UNBOUNDED_RADIUS} if the filter needs the whole image at once.
+     */
+    default int getKernelRadius() {
+        return UNBOUNDED_RADIUS;
+    }
+
+    /**
+     * @return The kernel radius with the given parameter values; see {@link #getKernelRadius()}.
+     */
+    default int getKernelRadius(FilterParameters parameters) {
+        return getKernelRadius();
+    }
+
+    /**
+     * @return The radius of running the filters one after another: the sum of their radii, or
+     * {@link #UNBOUNDED_RADIUS} if any of them is unbounded.
+     */
+    static int combinedKernelRadius(Iterable<? extends ImageFilter> filters) {
+        return combinedKernelRadius(filters, FilterParameters.NONE);
+    }
+
+    /**
+     * @return The combined radius of the filters with the given parameter values.
+     */
+    static int combinedKernelRadius(Iterable<? extends ImageFilter> filters, FilterParameters parameters) {
+        int radius = 0;
+        for (ImageFilter filter : filters) {
+            int filterRadius = filter.getKernelRadius(parameters);
+            if (filterRadius == UNBOUNDED_RADIUS) {
+                return UNBOUNDED_RADIUS;
+            }
+            radius += filterRadius;
+        }
+        return radius;
+    }
 }
@@ -0,0 +1,16 @@
+package com.nerdery.imagechallenge.services.filters;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * An {@link ImageFilter} that can reuse work between runs on the same input, when it is told what the input is.
+ * {@link com.nerdery.imagechallenge.services.FilterPipeline} hands it a key made of the source image's content hash
+ * and the stages that ran before it, so it never has to work out from the pixels whether it has seen an image before.
+ */
+public interface InputKeyedFilter extends ImageFilter {
+
+    /**
+     * @param inputKey Identifies the input image's content: the same key always means the same pixels.
+     */
+    BufferedImage transform(BufferedImage sourceImage, FilterParameters parameters, String inputKey);
+}
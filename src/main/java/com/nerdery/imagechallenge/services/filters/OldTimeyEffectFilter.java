@@ -1,34 +1,33 @@
 package com.nerdery.imagechallenge.services.filters;
 
+import com.google.common.collect.ImmutableList;
 import org.springframework.stereotype.Component;
 
 import java.awt.image.BufferedImage;
-import java.awt.image.BufferedImageOp;
-import java.awt.image.ConvolveOp;
-import java.awt.image.Kernel;
-import java.awt.image.WritableRaster;
+import java.util.List;
 
 /**
  * This filter produces an image that resembles an "old time"-like photograph.<p/>
  *
  * First, the image is convolved. This has the effect of blurring and brightening the image. Next, a sepia effect
- * is applied to the image.<p/>
+ * is applied to the image (see {@link SepiaFilter}). The sepia is fused into the convolution, so both happen in one
+ * pass over the image.<p/>
  *
  * @author Ryan Evans (revans@nerdery.com)
  */
 @Component
-public class OldTimeyEffectFilter implements ImageFilter {
+public class OldTimeyEffectFilter implements StagedFilter {
 
     /* using a 3x3 matrix where the numbers add-up to MORE than 1 causes a brightening effect */
-    private static final float[] CONVOLVE_MATRIX = {
+    private static final ConvolutionKernel CONVOLVE_MATRIX = ConvolutionKernel.of(3, 3,
             0.155f, 0.155f, 0.155f,
             0.155f, 0.155f, 0.155f,
-            0.155f, 0.155f, 0.155f,
-    };
+            0.155f, 0.155f, 0.155f);
 
-    /* these numbers can be played around with */
-    private static final int SEPIA_DEPTH = 20;
-    private static final int SEPIA_INTENSITY = 25;
+    private final ConvolutionFilter convolve = new ConvolutionFilter("OldTimeyEffect.convolve", CONVOLVE_MATRIX);
+    private final SepiaFilter sepia = new SepiaFilter();
+    private final List<ImageFilter> stages = ImmutableList.of(convolve, sepia);
+    private final ConvolutionFilter fused = convolve.thenApply(sepia);
 
     @Override
     public String getName() {
@@ -36,33 +35,12 @@ public class OldTimeyEffectFilter implements ImageFilter {
     }
 
     @Override
-    public BufferedImage transform(BufferedImage sourceImage) {
-        BufferedImage targetImage = convolveImage(sourceImage);
-        applySepiaToImage(targetImage);
-        return targetImage;
+    public List<ImageFilter> getStages() {
+        return stages;
     }
 
-    private BufferedImage convolveImage(BufferedImage sourceImage) {
-        BufferedImageOp op = new ConvolveOp(new Kernel(3, 3, CONVOLVE_MATRIX));
-        return op.filter(sourceImage, null);
-    }
-
-    private void applySepiaToImage(BufferedImage image) {
-        int sourceWidth = image.getWidth();
-        int sourceHeight = image.getHeight();
-
-        WritableRaster raster = image.getRaster();
-
-        int[] pixels = new int[sourceWidth * sourceHeight * 3];
-        raster.getPixels(0, 0, sourceWidth, sourceHeight, pixels);
-
-        for (int i = 0; i < pixels.length; i += 3) {
-            int grayRGB = (pixels[i] + pixels[i + 1] + pixels[i + 2]) / 3;
-            pixels[i] = Math.min(255, grayRGB + (SEPIA_DEPTH * 2));
-            pixels[i + 1] = Math.min(255, grayRGB + SEPIA_DEPTH);
-            pixels[i + 2]= Math.max(0, grayRGB - SEPIA_INTENSITY);
-        }
-
-        raster.setPixels(0, 0, sourceWidth, sourceHeight, pixels);
+    @Override
+    public BufferedImage transform(BufferedImage sourceImage) {
+        return fused.transform(sourceImage);
     }
 }
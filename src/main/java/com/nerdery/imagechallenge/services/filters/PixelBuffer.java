@@ -0,0 +1,172 @@
+package com.nerdery.imagechallenge.services.filters;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Direct access to the primitive array behind an image, so filters can work on pixels without going through the
+ * color model for every pixel the way {@link BufferedImage#getRGB(int, int)} does.<p/>
+ *
+ * Pixels are stored row by row with no padding; the {@link PixelLayout} describes how the channels of each pixel are
+ * arranged. Writes to the array are writes to the image.
+ */
+public class PixelBuffer {
+    private final BufferedImage image;
+    private final PixelLayout layout;
+    private final int width;
+    private final int height;
+    private final int[] ints;
+    private final byte[] bytes;
+
+    private PixelBuffer(BufferedImage image, PixelLayout layout) {
+        this.image = image;
+        this.layout = layout;
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+        if (layout.isPacked()) {
+            ints = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            bytes = null;
+        } else {
+            ints = null;
+            bytes = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        }
+    }
+
+    /**
+     * Wrap the image without copying when its type has a direct layout, or fall back to {@link #normalize}.
+     */
+    public static PixelBuffer wrap(BufferedImage image) {
+        PixelLayout layout = PixelLayout.forImageType(image.getType());
+        if (layout == null || !isContiguous(image, layout)) {
+            return normalize(image);
+        }
+        return new PixelBuffer(image, layout);
+    }
+
+    /**
+     * Get the image as packed <code>int</code> pixels: {@link PixelLayout#INT_ARGB} when the image has alpha, and
+     * {@link PixelLayout#INT_RGB} otherwise. Images already in one of those layouts are wrapped without copying.
+     */
+    public static PixelBuffer normalize(BufferedImage image) {
+        PixelLayout layout = PixelLayout.forImageType(image.getType());
+        if (layout != null && layout.isPacked() && isContiguous(image, layout)) {
+            return new PixelBuffer(image, layout);
+        }
+
+        PixelBuffer normalized = create(image.getWidth(), image.getHeight(),
+                image.getColorModel().hasAlpha() ? PixelLayout.INT_ARGB : PixelLayout.INT_RGB);
+        Graphics2D graphics = normalized.image.createGraphics();
+        graphics.drawImage(image, 0, 0, null);
+        graphics.dispose();
+        return normalized;
+    }
+
+    public static PixelBuffer create(int width, int height, PixelLayout layout) {
+        return new PixelBuffer(new BufferedImage(width, height, layout.getImageType()), layout);
+    }
+
+    /**
+     * @return A new, blank buffer with the same size and layout as this one.
+     */
+    public PixelBuffer createCompatible() {
+        return create(width, height, layout);
+    }
+
+    /**
+     * Sub-images share a data buffer with their parent, and decoders may pad rows, so only wrap arrays that hold
+     * exactly this image's pixels as a plain run of rows.
+     */
+    private static boolean isContiguous(BufferedImage image, PixelLayout layout) {
+        return image.getRaster().getParent() == null
+                && image.getRaster().getDataBuffer().getOffset() == 0
+                && image.getRaster().getDataBuffer().getSize() == image.getWidth() * image.getHeight() * layout.getElementsPerPixel();
+    }
+
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    public PixelLayout getLayout() {
+        return layout;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getPixelCount() {
+        return width * height;
+    }
+
+    /**
+     * @return The backing array of a packed layout.
+     * @throws IllegalStateException If the layout is byte interleaved.
+     */
+    public int[] getInts() {
+        if (ints == null) {
+            throw new IllegalStateException("Layout " + layout + " is not backed by an int array");
+        }
+        return ints;
+    }
+
+    /**
+     * @return The backing array of a byte interleaved layout.
+     * @throws IllegalStateException If the layout is packed.
+     */
+    public byte[] getBytes() {
+        if (bytes == null) {
+            throw new IllegalStateException("Layout " + layout + " is not backed by a byte array");
+        }
+        return bytes;
+    }
+
+    /**
+     * Read a single pixel as <code>0xAARRGGBB</code> regardless of layout. Pixels without alpha read as opaque.
+     */
+    public int getArgb(int index) {
+        switch (layout) {
+            case INT_RGB:
+                return ints[index] | 0xFF000000;
+            case INT_ARGB:
+                return ints[index];
+            case BYTE_BGR:
+                int bgr = index * 3;
+                return 0xFF000000 | ((bytes[bgr + 2] & 0xFF) << 16) | ((bytes[bgr + 1] & 0xFF) << 8) | (bytes[bgr] & 0xFF);
+            default:
+                int abgr = index * 4;
+                return ((bytes[abgr] & 0xFF) << 24) | ((bytes[abgr + 3] & 0xFF) << 16)
+                        | ((bytes[abgr + 2] & 0xFF) << 8) | (bytes[abgr + 1] & 0xFF);
+        }
+    }
+
+    /**
+     * Write a single <code>0xAARRGGBB</code> pixel regardless of layout. Alpha is dropped by layouts without it.
+     */
+    public void setArgb(int index, int argb) {
+        switch (layout) {
+            case INT_RGB:
+            case INT_ARGB:
+                ints[index] = argb;
+                break;
+            case BYTE_BGR:
+                int bgr = index * 3;
+                bytes[bgr] = (byte) argb;
+                bytes[bgr + 1] = (byte) (argb >> 8);
+                bytes[bgr + 2] = (byte) (argb >> 16);
+                break;
+            default:
+                int abgr = index * 4;
+                bytes[abgr] = (byte) (argb >> 24);
+                bytes[abgr + 1] = (byte) argb;
+                bytes[abgr + 2] = (byte) (argb >> 8);
+                bytes[abgr + 3] = (byte) (argb >> 16);
+                break;
+        }
+    }
+}
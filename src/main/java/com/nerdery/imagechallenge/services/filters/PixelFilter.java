@@ -0,0 +1,25 @@
+package com.nerdery.imagechallenge.services.filters;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * An {@link ImageFilter} that works directly on primitive pixel arrays. {@link
+ * com.nerdery.imagechallenge.services.FilterService} prefers {@link #transform(PixelBuffer, PixelBuffer)} and hands
+ * it the source normalized to packed <code>int</code> pixels, so implementations only have to handle
+ * {@link PixelLayout#INT_RGB} and {@link PixelLayout#INT_ARGB}.
+ */
+public interface PixelFilter extends ImageFilter {
+
+    /**
+     * Filter the source pixels into the target, which has the same size and layout as the source.
+     */
+    void transform(PixelBuffer source, PixelBuffer target);
+
+    @Override
+    default BufferedImage transform(BufferedImage sourceImage) {
+        PixelBuffer source = PixelBuffer.normalize(sourceImage);
+        PixelBuffer target = source.createCompatible();
+        transform(source, target);
+        return target.getImage();
+    }
+}
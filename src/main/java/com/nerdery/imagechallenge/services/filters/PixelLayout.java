@@ -0,0 +1,61 @@
+package com.nerdery.imagechallenge.services.filters;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * The in-memory channel layouts a {@link PixelBuffer} can expose directly.
+ */
+public enum PixelLayout {
+    /** One <code>int</code> per pixel packed as <code>0x00RRGGBB</code>; the top byte is ignored. */
+    INT_RGB(BufferedImage.TYPE_INT_RGB, 1, false),
+    /** One <code>int</code> per pixel packed as <code>0xAARRGGBB</code>, not premultiplied. */
+    INT_ARGB(BufferedImage.TYPE_INT_ARGB, 1, true),
+    /** Three <code>byte</code>s per pixel in blue, green, red order. */
+    BYTE_BGR(BufferedImage.TYPE_3BYTE_BGR, 3, false),
+    /** Four <code>byte</code>s per pixel in alpha, blue, green, red order, not premultiplied. */
+    BYTE_ABGR(BufferedImage.TYPE_4BYTE_ABGR, 4, true);
+
+    private final int imageType;
+    private final int elementsPerPixel;
+    private final boolean alpha;
+
+    PixelLayout(int imageType, int elementsPerPixel, boolean alpha) {
+        this.imageType = imageType;
+        this.elementsPerPixel = elementsPerPixel;
+        this.alpha = alpha;
+    }
+
+    /**
+     * @return The {@link BufferedImage} type constant backed by this layout.
+     */
+    public int getImageType() {
+        return imageType;
+    }
+
+    /**
+     * @return How many array elements make up one pixel.
+     */
+    public int getElementsPerPixel() {
+        return elementsPerPixel;
+    }
+
+    public boolean hasAlpha() {
+        return alpha;
+    }
+
+    public boolean isPacked() {
+        return elementsPerPixel == 1;
+    }
+
+    /**
+     * @return The layout backing images of the given type, or <code>null</code> if the type has no direct layout.
+     */
+    public static PixelLayout forImageType(int imageType) {
+        for (PixelLayout layout : values()) {
+            if (layout.imageType == imageType) {
+                return layout;
+            }
+        }
+        return null;
+    }
+}
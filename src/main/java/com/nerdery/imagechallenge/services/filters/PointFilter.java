@@ -0,0 +1,36 @@
+package com.nerdery.imagechallenge.services.filters;
+
+import java.util.stream.IntStream;
+
+/**
+ * A {@link PixelFilter} where every output pixel depends only on the input pixel at the same position. Runs of point
+ * filters in a pipeline are fused into a single pass over memory.
+ */
+public interface PointFilter extends PixelFilter {
+
+    /**
+     * @param pixel The source pixel as <code>0xAARRGGBB</code>.
+     * @return The filtered pixel. The alpha bits should be carried over unless the filter means to change them.
+     */
+    int filterPixel(int pixel);
+
+    @Override
+    default int getKernelRadius() {
+        return 0;
+    }
+
+    /**
+     * Apply {@link #filterPixel(int)} to every pixel. The target may be the source itself.
+     */
+    @Override
+    default void transform(PixelBuffer source, PixelBuffer target) {
+        int width = source.getWidth();
+        int[] sourcePixels = source.getInts();
+        int[] targetPixels = target.getInts();
+        IntStream.range(0, source.getHeight()).parallel().forEach(y -> {
+            for (int i = y * width; i < (y + 1) * width; i++) {
+                targetPixels[i] = filterPixel(sourcePixels[i]);
+            }
+        });
+    }
+}
@@ -1,6 +1,11 @@
 package com.nerdery.imagechallenge.services.filters;
 
-import com.google.common.util.concurrent.Futures;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.nerdery.imagechallenge.sanic.BrushGeometry;
+import com.nerdery.imagechallenge.sanic.IntensityLevels;
 import com.nerdery.imagechallenge.sanic.SanicChunk;
 import com.nerdery.imagechallenge.sanic.SanicShared;
 import com.nerdery.imagechallenge.sanic.SanicTask;
@@ -13,7 +18,12 @@ import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import java.awt.image.BufferedImage;
-import java.util.concurrent.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * This is a re-implementation of the OilPaintFilter, but it goes super fast like Sanic Hegehog.
@@ -27,8 +37,12 @@ public class SanicOilPaintFilter implements ImageFilter {
     Environment environment;
 
     private SanicShared config;
-    private ExecutorService executorService;
-    private CompletionService<Void> completionService;
+
+    /**
+     * The worker pool is only started once the filter is first used, so instances that never see a request (or that
+     * only report their kernel radius) don't hold on to threads.
+     */
+    private final Supplier<ExecutorService> executorService = Suppliers.memoize(this::startExecutor);
 
     public SanicOilPaintFilter() {}
 
@@ -37,67 +51,105 @@ public class SanicOilPaintFilter implements ImageFilter {
         return NAME;
     }
 
+    @Override
+    public List<FilterParameter> getParameters() {
+        return ImmutableList.of(config.getRadiusParameter(), config.getLevelsParameter());
+    }
+
+    @Override
+    public int getKernelRadius() {
+        return getKernelRadius(FilterParameters.NONE);
+    }
+
+    @Override
+    public int getKernelRadius(FilterParameters parameters) {
+        return parameters.getInt(config.getRadiusParameter());
+    }
+
     @PostConstruct
     private void configureFilter() {
         config = new SanicShared(environment);
-        executorService = Executors.newFixedThreadPool(config.getPoolSize());
-        completionService = new ExecutorCompletionService<>(executorService);
+    }
+
+    private ExecutorService startExecutor() {
         LOGGER.info("Initializing Sanic thread pool with {} members", config.getPoolSize());
+        return Executors.newFixedThreadPool(config.getPoolSize(),
+                new ThreadFactoryBuilder().setNameFormat("sanic-%d").setDaemon(true).build());
     }
 
     @Override
     public BufferedImage transform(final BufferedImage sourceImage) {
-        if (sourceImage.getColorModel().getPixelSize() > (8 * config.getBufferChannels())) {
-            LOGGER.warn("Cannot process an image that does not match the configured color model.");
+        return transform(sourceImage, FilterParameters.NONE);
+    }
+
+    @Override
+    public BufferedImage transform(final BufferedImage sourceImage, final FilterParameters parameters) {
+        final int bands = sourceImage.getRaster().getNumBands();
+        if (bands < 3) {
+            LOGGER.warn("Cannot process an image with fewer than three color bands.");
             return sourceImage;
         }
 
         final int width = sourceImage.getWidth();
         final int height = sourceImage.getHeight();
-        final int rasterSize = width * height * config.getBufferChannels();
+        final int rasterSize = width * height * bands;
+        final BrushGeometry brush = BrushGeometry.of(parameters.getInt(config.getRadiusParameter()));
+        final IntensityLevels intensityLevels = IntensityLevels.of(parameters.getInt(config.getLevelsParameter()));
         LOGGER.info("Received a request to process an image with width {}, height {}, and raster size {}", width, height, rasterSize);
 
-        if (rasterSize > config.getBufferSize()) {
-            LOGGER.warn("Cannot process an image that exceeds the buffer size.");
-            return sourceImage;
-        }
-
-        LOGGER.info("Segmenting image into processing chunks - each block of rows will contain {} pixels.", config.getRowCount() * width);
-        long beginTime = System.nanoTime();
-        int taskCount = 0;
-        for (int i = 0; i < height; i += config.getRowCount()) {
-            final SanicChunk chunk = new SanicChunk();
-            chunk.setBeginRowInclusive(i);
-            chunk.setEndRowInclusive(i + config.getRowCount() - 1);
-            LOGGER.debug("Creating chunk spanning rows {} to {}", chunk.getBeginRowInclusive(), chunk.getEndRowInclusive());
-            chunk.setBeginBufferInclusive(i * width * 3);
-            chunk.setEndBufferInclusive((i * width * 3) + (width * 3 * config.getRowCount()) - 1);
-            LOGGER.debug("Chunk utilizing buffer indices {} to {}", chunk.getBeginBufferInclusive(), chunk.getEndBufferInclusive());
-            chunk.setRaster(sourceImage.getRaster());
-            chunk.setSourceWidth(width);
-            chunk.setSourceHeight(height);
-
-            completionService.submit(new SanicTask(chunk, config));
-            taskCount++;
-        }
-
-        int completed = 0;
+        // Every request gets its own output buffer and its own set of futures, so concurrent requests never see each
+        // other's pixels or task completions.
+        final int[] buffer = config.getBufferPool().lease(rasterSize);
+        final List<Future<Void>> futures = new ArrayList<>();
         try {
-            while (completed < taskCount) {
-                completionService.take();
-                completed++;
+            LOGGER.info("Segmenting image into processing chunks - each block of rows will contain {} pixels.", config.getRowCount() * width);
+            long beginTime = System.nanoTime();
+            for (int i = 0; i < height; i += config.getRowCount()) {
+                final SanicChunk chunk = new SanicChunk();
+                chunk.setBeginRowInclusive(i);
+                chunk.setEndRowInclusive(i + config.getRowCount() - 1);
+                LOGGER.debug("Creating chunk spanning rows {} to {}", chunk.getBeginRowInclusive(), chunk.getEndRowInclusive());
+                chunk.setBeginBufferInclusive(i * width * bands);
+                chunk.setEndBufferInclusive((i * width * bands) + (width * bands * config.getRowCount()) - 1);
+                LOGGER.debug("Chunk utilizing buffer indices {} to {}", chunk.getBeginBufferInclusive(), chunk.getEndBufferInclusive());
+                chunk.setRaster(sourceImage.getRaster());
+                chunk.setSourceWidth(width);
+                chunk.setSourceHeight(height);
+                chunk.setBands(bands);
+                chunk.setBuffer(buffer);
+
+                futures.add(executorService.get().submit(new SanicTask(chunk, brush, intensityLevels)));
+            }
+
+            for (final Future<Void> future : futures) {
+                future.get();
             }
 
             SanicUtils.logDuration("Sanic Processing Time", System.nanoTime() - beginTime);
+
+            final BufferedImage result = new BufferedImage(width, height, sourceImage.getType());
+            result.getRaster().setPixels(0, 0, width, height, buffer);
+            config.getBufferPool().release(buffer);
+            return result;
         }
         catch (final InterruptedException e) {
             LOGGER.error("Interrupted during computation.");
+            Thread.currentThread().interrupt();
+            cancelAll(futures);
             return sourceImage;
         }
+        catch (final ExecutionException e) {
+            LOGGER.error("Sanic task failed.", e.getCause());
+            cancelAll(futures);
+            return sourceImage;
+        }
+    }
 
-        final BufferedImage result = new BufferedImage(width, height, sourceImage.getType());
-        result.getRaster().setPixels(0, 0, width, height, config.getBuffer());
-
-        return result;
+    /**
+     * Stop any tasks that are still running for an abandoned request. Their buffer is deliberately not returned to the
+     * pool, because a task that is mid-row may still write to it.
+     */
+    private void cancelAll(final List<Future<Void>> futures) {
+        futures.forEach(future -> future.cancel(true));
     }
 }
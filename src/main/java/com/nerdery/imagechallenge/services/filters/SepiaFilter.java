@@ -0,0 +1,30 @@
+package com.nerdery.imagechallenge.services.filters;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Tints each pixel sepia: the pixel is reduced to gray, then warmed up by adding red and green and removing blue.<p/>
+ *
+ * <em>Extracted from {@link OldTimeyEffectFilter}.</em>
+ */
+@Component
+public class SepiaFilter implements PointFilter {
+
+    /* these numbers can be played around with */
+    private static final int SEPIA_DEPTH = 20;
+    private static final int SEPIA_INTENSITY = 25;
+
+    @Override
+    public String getName() {
+        return "Sepia";
+    }
+
+    @Override
+    public int filterPixel(int pixel) {
+        int grayRGB = (((pixel >> 16) & 0xFF) + ((pixel >> 8) & 0xFF) + (pixel & 0xFF)) / 3;
+        int red = Math.min(255, grayRGB + (SEPIA_DEPTH * 2));
+        int green = Math.min(255, grayRGB + SEPIA_DEPTH);
+        int blue = Math.max(0, grayRGB - SEPIA_INTENSITY);
+        return (pixel & 0xFF000000) | (red << 16) | (green << 8) | blue;
+    }
+}
@@ -0,0 +1,17 @@
+package com.nerdery.imagechallenge.services.filters;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Sharpens the image by subtracting each pixel's four neighbors from it.
+ */
+@Component
+public class SharpenFilter extends ConvolutionFilter {
+
+    public SharpenFilter() {
+        super("Sharpen", ConvolutionKernel.of(3, 3,
+                0, -1, 0,
+                -1, 5, -1,
+                0, -1, 0));
+    }
+}
@@ -0,0 +1,200 @@
+package com.nerdery.imagechallenge.services.filters;
+
+import com.google.common.collect.ImmutableList;
+import com.nerdery.imagechallenge.sanic.BrushGeometry;
+import com.nerdery.imagechallenge.sanic.CircleSpans;
+import com.nerdery.imagechallenge.sanic.IntensityLevels;
+import com.nerdery.imagechallenge.sanic.SanicShared;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * An oil paint engine that produces exactly the same output as {@link SanicOilPaintFilter}, but never rescans the
+ * whole brush for a pixel.<p/>
+ *
+ * Each row keeps a histogram of pixel counts and RGB sums per intensity level. Moving one pixel to the right only
+ * subtracts the column of pixels leaving the brush on each brush row and adds the column entering it, using the
+ * {@link CircleSpans} of the brush. That makes the work per pixel grow linearly with the radius instead of with its
+ * square, so large brush radii stay affordable.
+ */
+@Component
+public class SlidingOilPaintFilter implements ImageFilter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SlidingOilPaintFilter.class);
+
+    @Autowired
+    Environment environment;
+
+    private SanicShared config;
+
+    @Override
+    public String getName() {
+        return "SlidingOilPaint";
+    }
+
+    @Override
+    public List<FilterParameter> getParameters() {
+        return ImmutableList.of(config.getRadiusParameter(), config.getLevelsParameter());
+    }
+
+    @Override
+    public int getKernelRadius() {
+        return getKernelRadius(FilterParameters.NONE);
+    }
+
+    @Override
+    public int getKernelRadius(FilterParameters parameters) {
+        return parameters.getInt(config.getRadiusParameter());
+    }
+
+    @PostConstruct
+    private void configureFilter() {
+        config = new SanicShared(environment);
+    }
+
+    @Override
+    public BufferedImage transform(BufferedImage sourceImage) {
+        return transform(sourceImage, FilterParameters.NONE);
+    }
+
+    @Override
+    public BufferedImage transform(BufferedImage sourceImage, FilterParameters parameters) {
+        if (sourceImage.getRaster().getNumBands() < 3) {
+            LOGGER.warn("Cannot process an image with fewer than three color bands.");
+            return sourceImage;
+        }
+        BrushGeometry brush = BrushGeometry.of(parameters.getInt(config.getRadiusParameter()));
+        IntensityLevels intensityLevels = IntensityLevels.of(parameters.getInt(config.getLevelsParameter()));
+        return new Instance(sourceImage, brush.getCircleSpans(), intensityLevels).transform();
+    }
+
+    /**
+     * Holds the per-request state so the filter itself stays stateless.
+     */
+    private static class Instance {
+
+        final BufferedImage targetImage;
+        final CircleSpans spans;
+        final int radius;
+        final IntensityLevels intensityLevels;
+        final int levels;
+        final int width;
+        final int height;
+        final int bands;
+        final int[] sourcePixels;
+        final int[] targetPixels;
+        final byte[] pixelLevels;
+
+        Instance(BufferedImage sourceImage, CircleSpans spans, IntensityLevels intensityLevels) {
+            if (intensityLevels.getLevels() > 255) {
+                throw new IllegalArgumentException("At most 255 intensity levels are supported.");
+            }
+
+            this.spans = spans;
+            this.radius = spans.getRadius();
+            this.intensityLevels = intensityLevels;
+            this.levels = intensityLevels.getLevels();
+            width = sourceImage.getWidth();
+            height = sourceImage.getHeight();
+            bands = sourceImage.getRaster().getNumBands();
+
+            sourcePixels = sourceImage.getRaster().getPixels(0, 0, width, height, new int[width * height * bands]);
+            targetPixels = new int[width * height * bands];
+            pixelLevels = new byte[width * height];
+
+            targetImage = new BufferedImage(width, height, sourceImage.getType());
+        }
+
+        BufferedImage transform() {
+            // the intensity of each pixel is needed by every brush that covers it, so work it out once up front
+            IntStream.range(0, height).parallel().forEach(this::calculateLevels);
+            IntStream.range(0, height).parallel().forEach(this::transformRow);
+            targetImage.getRaster().setPixels(0, 0, width, height, targetPixels);
+            return targetImage;
+        }
+
+        private void calculateLevels(int y) {
+            for (int i = y * width; i < (y + 1) * width; i++) {
+                int offset = i * bands;
+                pixelLevels[i] = (byte) intensityLevels.level(sourcePixels[offset], sourcePixels[offset + 1], sourcePixels[offset + 2]);
+            }
+        }
+
+        private void transformRow(int y) {
+            int[] counts = new int[levels + 1];
+            int[] sumR = new int[levels + 1];
+            int[] sumG = new int[levels + 1];
+            int[] sumB = new int[levels + 1];
+
+            // only brush rows that fall inside the image contribute anything
+            int firstDy = Math.max(-radius, -y);
+            int lastDy = Math.min(radius, height - 1 - y);
+
+            // fill the histogram for the brush centered on the first pixel of the row
+            for (int dy = firstDy; dy <= lastDy; dy++) {
+                int halfWidth = spans.halfWidth(dy);
+                int rowStart = (y + dy) * width;
+                for (int px = 0; px <= Math.min(width - 1, halfWidth); px++) {
+                    add(rowStart + px, counts, sumR, sumG, sumB, 1);
+                }
+            }
+
+            for (int x = 0; x < width; x++) {
+                writePixel(y * width + x, counts, sumR, sumG, sumB);
+
+                if (x + 1 == width) {
+                    break;
+                }
+
+                // slide the brush one pixel to the right
+                for (int dy = firstDy; dy <= lastDy; dy++) {
+                    int halfWidth = spans.halfWidth(dy);
+                    int rowStart = (y + dy) * width;
+                    int leaving = x - halfWidth;
+                    int entering = x + 1 + halfWidth;
+                    if (leaving >= 0) {
+                        add(rowStart + leaving, counts, sumR, sumG, sumB, -1);
+                    }
+                    if (entering < width) {
+                        add(rowStart + entering, counts, sumR, sumG, sumB, 1);
+                    }
+                }
+            }
+        }
+
+        private void add(int index, int[] counts, int[] sumR, int[] sumG, int[] sumB, int sign) {
+            int level = pixelLevels[index] & 0xFF;
+            int offset = index * bands;
+            counts[level] += sign;
+            sumR[level] += sign * sourcePixels[offset];
+            sumG[level] += sign * sourcePixels[offset + 1];
+            sumB[level] += sign * sourcePixels[offset + 2];
+        }
+
+        private void writePixel(int index, int[] counts, int[] sumR, int[] sumG, int[] sumB) {
+            // ties go to the lowest level, the same as SanicTask
+            int largest = 0;
+            for (int level = 1; level <= levels; level++) {
+                if (counts[level] > counts[largest]) {
+                    largest = level;
+                }
+            }
+
+            int size = counts[largest];
+            int offset = index * bands;
+            targetPixels[offset] = sumR[largest] / size;
+            targetPixels[offset + 1] = sumG[largest] / size;
+            targetPixels[offset + 2] = sumB[largest] / size;
+            for (int band = 3; band < bands; band++) {
+                targetPixels[offset + band] = sourcePixels[offset + band];
+            }
+        }
+    }
+}
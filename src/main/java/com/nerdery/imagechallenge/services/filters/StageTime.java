@@ -0,0 +1,31 @@
+package com.nerdery.imagechallenge.services.filters;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long one stage of a filter pipeline took.
+ */
+public class StageTime {
+    private String stageName;
+    private long elapsedNanos;
+
+    public StageTime(String stageName, long elapsedNanos) {
+        this.stageName = stageName;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public String getStageName() {
+        return stageName;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return The elapsed time in whole milliseconds.
+     */
+    public Long getResultTime() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+}
@@ -0,0 +1,21 @@
+package com.nerdery.imagechallenge.services.filters;
+
+import java.util.List;
+
+/**
+ * An {@link ImageFilter} that is really a fixed sequence of simpler filters. Pipelines run the stages individually,
+ * so a trailing point stage can be fused with the point filters that follow it.
+ */
+public interface StagedFilter extends ImageFilter {
+
+    /**
+     * @return The stages in the order they are applied. Running them one after another must give the same result as
+     * {@link #transform(java.awt.image.BufferedImage)}.
+     */
+    List<ImageFilter> getStages();
+
+    @Override
+    default int getKernelRadius() {
+        return ImageFilter.combinedKernelRadius(getStages());
+    }
+}
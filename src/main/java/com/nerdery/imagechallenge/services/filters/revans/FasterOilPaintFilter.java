@@ -1,47 +1,70 @@
 package com.nerdery.imagechallenge.services.filters.revans;
 
+import com.google.common.collect.ImmutableList;
+import com.nerdery.imagechallenge.sanic.BrushGeometry;
+import com.nerdery.imagechallenge.sanic.IntensityLevels;
+import com.nerdery.imagechallenge.services.filters.FilterParameter;
+import com.nerdery.imagechallenge.services.filters.FilterParameters;
 import com.nerdery.imagechallenge.services.filters.ImageFilter;
 import org.springframework.stereotype.Component;
 
 import java.awt.image.BufferedImage;
+import java.util.List;
 import java.util.stream.IntStream;
 
 /**
- * An adaptation of {@link com.nerdery.imagechallenge.services.filters.OilPaintFilter} which performs better.
+ * An adaptation of {@link com.nerdery.imagechallenge.services.filters.OilPaintFilter} which performs better.<p/>
+ *
+ * The radius and the highest intensity level can be set per request. The brush offsets for each radius are worked out
+ * once and reused, rather than testing every square of the bounding box against the circle for every pixel.
  *
  * @author Ryan Evans (revans)
  */
 @Component
 public class FasterOilPaintFilter implements ImageFilter {
 
-    // filter constants - change values to alter effect
+    // filter defaults - change values to alter effect
     private static final int RADIUS = 6;
     private static final int LEVELS = 9;
 
-    // calculated constants
-    private static final int RADIUS2 = RADIUS * RADIUS;
+    // request parameters; levels is the highest intensity level, like the other oil paint filters take
+    private static final FilterParameter RADIUS_PARAMETER = FilterParameter.ofInt("radius", 1, 32, RADIUS);
+    private static final FilterParameter LEVELS_PARAMETER = FilterParameter.ofInt("levels", 1, 255, LEVELS - 1);
 
     // band constants
     private static final int RGB = 3;
     private static final int ARGB = 4;
 
-    /**
-     * Use the following formula to determine if x & y are within RADIUS:
-     *
-     * x<sup>2</sup> + y<sup>2</sup> &lt; <code>RADIUS</code><sup>2</sup>
-     */
-    private static boolean withinCircle(int x, int y) {
-        return (x * x + y * y) < RADIUS2;
-    }
-
     @Override
     public String getName() {
         return "revans-FasterOilPaintFilter";
     }
 
+    @Override
+    public List<FilterParameter> getParameters() {
+        return ImmutableList.of(RADIUS_PARAMETER, LEVELS_PARAMETER);
+    }
+
+    @Override
+    public int getKernelRadius() {
+        return RADIUS;
+    }
+
+    @Override
+    public int getKernelRadius(FilterParameters parameters) {
+        return parameters.getInt(RADIUS_PARAMETER);
+    }
+
     @Override
     public BufferedImage transform(BufferedImage sourceImage) {
-        return new Instance(sourceImage).transform();
+        return transform(sourceImage, FilterParameters.NONE);
+    }
+
+    @Override
+    public BufferedImage transform(BufferedImage sourceImage, FilterParameters parameters) {
+        // the order of the offsets matters: ties between buckets go to whichever reaches the size first
+        int[] brush = BrushGeometry.of(parameters.getInt(RADIUS_PARAMETER)).getInteriorOffsets();
+        return new Instance(sourceImage, brush, IntensityLevels.of(parameters.getInt(LEVELS_PARAMETER))).transform();
     }
 
     /**
@@ -55,8 +78,15 @@ public class FasterOilPaintFilter implements ImageFilter {
         final int bands;
         final int[] sourcePixels;
         final int[] targetPixels;
+        final int[] brush;
+        final IntensityLevels intensityLevels;
+        final int buckets;
+
+        Instance(BufferedImage sourceImage, int[] brush, IntensityLevels intensityLevels) {
+            this.brush = brush;
+            this.intensityLevels = intensityLevels;
+            buckets = intensityLevels.getLevels() + 1;
 
-        Instance(BufferedImage sourceImage) {
             width = sourceImage.getWidth();
             height = sourceImage.getHeight();
 
@@ -86,31 +116,28 @@ public class FasterOilPaintFilter implements ImageFilter {
 
         private void transformPixel(int x, int y) {
             int largestBucket = 0;
-            int[] bucketSizes = new int[LEVELS];
-            int[] bucketR = new int[LEVELS];
-            int[] bucketG = new int[LEVELS];
-            int[] bucketB = new int[LEVELS];
-
-            for (int dX = -RADIUS; dX < RADIUS; dX++) {
-                int pX = x + dX;
-                if (!withinBoundsX(pX)) continue;
-                for (int dY = -RADIUS; dY < RADIUS; dY++) {
-                    int pY = y + dY;
-                    if (withinBoundsY(pY) && withinCircle(dX, dY)) {
-                        int offset = getPixelOffset(pX, pY);
-                        int r = sourcePixels[offset];
-                        int g = sourcePixels[offset + 1];
-                        int b = sourcePixels[offset + 2];
-                        int level = calculateLevel(r, g, b);
-
-                        bucketR[level] += r;
-                        bucketG[level] += g;
-                        bucketB[level] += b;
-
-                        bucketSizes[level]++;
-                        if (level != largestBucket && bucketSizes[level] > bucketSizes[largestBucket]) {
-                            largestBucket = level;
-                        }
+            int[] bucketSizes = new int[buckets];
+            int[] bucketR = new int[buckets];
+            int[] bucketG = new int[buckets];
+            int[] bucketB = new int[buckets];
+
+            for (int i = 0; i < brush.length; i += 2) {
+                int pX = x + brush[i];
+                int pY = y + brush[i + 1];
+                if (withinBoundsX(pX) && withinBoundsY(pY)) {
+                    int offset = getPixelOffset(pX, pY);
+                    int r = sourcePixels[offset];
+                    int g = sourcePixels[offset + 1];
+                    int b = sourcePixels[offset + 2];
+                    int level = intensityLevels.level(r, g, b);
+
+                    bucketR[level] += r;
+                    bucketG[level] += g;
+                    bucketB[level] += b;
+
+                    bucketSizes[level]++;
+                    if (level != largestBucket && bucketSizes[level] > bucketSizes[largestBucket]) {
+                        largestBucket = level;
                     }
                 }
             }
@@ -132,13 +159,6 @@ public class FasterOilPaintFilter implements ImageFilter {
             return y >= 0 && y < height;
         }
 
-        /**
-         * Calculate the level of intensity given the RGB color value.
-         */
-        private int calculateLevel(int r, int g, int b) {
-            return (((r + g + b) / 3) * (LEVELS - 1)) / 255;
-        }
-
         /**
          * Calculate the offset of the pixel at x, y given the width and number of color bands.
          */
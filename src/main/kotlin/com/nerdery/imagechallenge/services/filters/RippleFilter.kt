@@ -1,13 +1,24 @@
 package com.nerdery.imagechallenge.services.filters
 
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
+import com.google.common.cache.Weigher
 import org.springframework.stereotype.Component
 import java.awt.image.BufferedImage
-import java.awt.image.DataBufferByte
 import java.lang.Math.*
+import java.util.stream.IntStream
 
 /**
  * Applies a ripple displacement effect to the image.
  *
+ * Where each output pixel is taken from only depends on the image size and the ripple parameters, so that is worked
+ * out once per size and parameters into a displacement map of source pixel indices. Every request for a combination
+ * already seen is then a single gather pass, done a row at a time in parallel, in whatever layout the source image has.
+ *
+ * Animation frames each shift the ripples by a different phase, and a map per frame would soon push everything else
+ * out of the cache. Only each pixel's distance from the center, which doesn't depend on the phase or the parameters,
+ * is kept per size, and a frame's map is worked out a row at a time from it as the row is gathered.
+ *
  * @author Justin Mullin
  */
 @Component
@@ -20,44 +31,155 @@ open class RippleFilter : ImageFilter {
 
         // The higher the power, the more each ripple displaces the image
         val Power = 70.0
+
+        // Requests can pick their own frequency and power within these bounds
+        val FrequencyParameter: FilterParameter = FilterParameter.ofDouble("frequency", 0.5, 50.0, Frequency)
+        val PowerParameter: FilterParameter = FilterParameter.ofDouble("power", 0.0, 200.0, Power)
+
+        // Pixels displaced from outside the image come out black
+        private val Outside = -1
+        private val OpaqueBlack = 0xFF000000.toInt()
+
+        // Four bytes per pixel, so this holds a few dozen maps of typical photo sizes
+        private val MaxMapBytes = 64L * 1024 * 1024
+
+        // Eight bytes per pixel, so this holds the distances for a handful of sizes
+        private val MaxDistanceBytes = 64L * 1024 * 1024
     }
 
-    override fun transform(sourceImage: BufferedImage): BufferedImage {
-        // Grab the source and destination data for processing
-        val destinationImage = BufferedImage(sourceImage.width, sourceImage.height, BufferedImage.TYPE_3BYTE_BGR)
-        val sourceData = getImageData(sourceImage)
-        val destinationData = getImageData(destinationImage)
+    private data class Size(val width: Int, val height: Int)
 
-        // Loop over each pixel to figure out its displaced value
-        for(x in 0 until sourceImage.width) {
-            for(y in 0 until sourceImage.height) {
-                val destinationIndex = coordToIndex(x, y, sourceImage.width)
+    private data class Geometry(val size: Size, val frequency: Double, val power: Double)
 
-                // Calculate the offset of this pixel from the center of the image
-                val xDifference = x - sourceImage.width/2.0
-                val yDifference = y - sourceImage.height/2.0
-                val distance = sqrt(pow(xDifference, 2.0) + pow(yDifference, 2.0))
+    private val distances: Cache<Size, DoubleArray> = CacheBuilder.newBuilder()
+            .maximumWeight(MaxDistanceBytes)
+            .weigher(Weigher<Size, DoubleArray> { size, distances -> distances.size * 8 })
+            .build()
 
-                // Harness the power of trigonometry to figure out the ripple amount at this pixel
-                val displacementAmount = (Power + sin(distance * Frequency/100.0) * Power).toInt()
+    private val displacementMaps: Cache<Geometry, IntArray> = CacheBuilder.newBuilder()
+            .maximumWeight(MaxMapBytes)
+            .weigher(Weigher<Geometry, IntArray> { geometry, map -> map.size * 4 })
+            .build()
 
-                // Calculate a vector pointed out from the image center with a magnitude of the displacement amount
-                val displacementX = (-xDifference / distance) * displacementAmount
-                val displacementY = (-yDifference / distance) * displacementAmount
+    override fun getParameters(): List<FilterParameter> = listOf(FrequencyParameter, PowerParameter)
+
+    override fun transform(sourceImage: BufferedImage) = transform(sourceImage, FilterParameters.NONE)
+
+    override fun transform(sourceImage: BufferedImage, parameters: FilterParameters) = transform(sourceImage, parameters, 0.0)
+
+    /**
+     * Ripple the image with the waves shifted by the given phase, in radians. Sweeping the phase from 0 to 2 pi makes
+     * the ripples travel outwards by one wavelength, back to where they started.
+     */
+    fun transform(sourceImage: BufferedImage, parameters: FilterParameters, phase: Double): BufferedImage {
+        val source = PixelBuffer.wrap(sourceImage)
+        val destination = source.createCompatible()
+        val size = Size(source.width, source.height)
+        val frequency = parameters.getDouble(FrequencyParameter)
+        val power = parameters.getDouble(PowerParameter)
+
+        if (phase == 0.0) {
+            val map = displacementMaps.get(Geometry(size, frequency, power)) {
+                createDisplacementMap(size, frequency, power)
+            }
+            IntStream.range(0, size.height).parallel().forEach { y ->
+                gatherRow(source, destination, map, y * size.width, y)
+            }
+        } else {
+            val distances = getDistances(size)
+            IntStream.range(0, size.height).parallel().forEach { y ->
+                val rowMap = IntArray(size.width)
+                displaceRow(size, distances, frequency, power, phase, y, rowMap, 0)
+                gatherRow(source, destination, rowMap, 0, y)
+            }
+        }
+        return destination.image
+    }
 
-                // Calculate the displaced pixel position
-                val sourceIndex = coordToIndex(x + displacementX.toInt(), y + displacementY.toInt(), sourceImage.width)
+    /**
+     * For every pixel, the index of the pixel it is displaced from, or [Outside] if that falls outside the image.
+     */
+    private fun createDisplacementMap(size: Size, frequency: Double, power: Double): IntArray {
+        val distances = getDistances(size)
+        val map = IntArray(size.width * size.height)
+        IntStream.range(0, size.height).parallel().forEach { y ->
+            displaceRow(size, distances, frequency, power, 0.0, y, map, y * size.width)
+        }
+        return map
+    }
 
-                // Write the offset pixel (taken from sourceIndex) to the current pixel (at destinationIndex)
-                destinationData[destinationIndex] = sourceData.getOrElse(sourceIndex, { 0.toByte() })
-                destinationData[destinationIndex+1] = sourceData.getOrElse(sourceIndex+1, { 0.toByte() })
-                destinationData[destinationIndex+2] = sourceData.getOrElse(sourceIndex+2, { 0.toByte() })
+    /**
+     * How far every pixel is from the center of the image.
+     */
+    private fun getDistances(size: Size): DoubleArray = distances.get(size) {
+        val distances = DoubleArray(size.width * size.height)
+        IntStream.range(0, size.height).parallel().forEach { y ->
+            for (x in 0 until size.width) {
+                // Calculate the offset of this pixel from the center of the image
+                val xDifference = x - size.width/2.0
+                val yDifference = y - size.height/2.0
+                distances[x + y * size.width] = sqrt(pow(xDifference, 2.0) + pow(yDifference, 2.0))
             }
         }
+        distances
+    }
+
+    /**
+     * Work out one row of the displacement map into the given array, starting at the offset. Displacements that run off
+     * the side of a row carry on into the next or previous row.
+     */
+    private fun displaceRow(size: Size, distances: DoubleArray, frequency: Double, power: Double, phase: Double,
+                            y: Int, map: IntArray, offset: Int) {
+        val pixels = size.width * size.height
+        val yDifference = y - size.height/2.0
+        for (x in 0 until size.width) {
+            val xDifference = x - size.width/2.0
+            val distance = distances[x + y * size.width]
 
-        return destinationImage
+            // Harness the power of trigonometry to figure out the ripple amount at this pixel
+            val displacementAmount = (power + sin(distance * frequency/100.0 - phase) * power).toInt()
+
+            // Calculate a vector pointed out from the image center with a magnitude of the displacement amount
+            val displacementX = (-xDifference / distance) * displacementAmount
+            val displacementY = (-yDifference / distance) * displacementAmount
+
+            // Calculate the displaced pixel position
+            val sourceIndex = (x + displacementX.toInt()) + (y + displacementY.toInt()) * size.width
+            map[offset + x] = if (sourceIndex >= 0 && sourceIndex < pixels) sourceIndex else Outside
+        }
     }
 
-    fun coordToIndex(x: Int, y: Int, width: Int) = (x + y * width) * 3
-    fun getImageData(image: BufferedImage): ByteArray = (image.raster.dataBuffer as DataBufferByte).data
-}
\ No newline at end of file
+    /**
+     * Write the offset pixels (taken from the map, starting at the offset) to one row of the destination.
+     */
+    private fun gatherRow(source: PixelBuffer, destination: PixelBuffer, map: IntArray, offset: Int, y: Int) {
+        val from = y * source.width
+        val to = from + source.width
+        val mapShift = offset - from
+        if (source.layout.isPacked) {
+            val sourceData = source.ints
+            val destinationData = destination.ints
+            for (i in from until to) {
+                val sourceIndex = map[i + mapShift]
+                destinationData[i] = if (sourceIndex == Outside) OpaqueBlack else sourceData[sourceIndex]
+            }
+        } else {
+            val sourceData = source.bytes
+            val destinationData = destination.bytes
+            val elements = source.layout.elementsPerPixel
+            for (i in from until to) {
+                val sourceIndex = map[i + mapShift]
+                if (sourceIndex == Outside) {
+                    // the destination starts out all zeroes, so only the alpha, which comes first, needs setting
+                    if (source.layout.hasAlpha()) {
+                        destinationData[i * elements] = -1
+                    }
+                } else {
+                    for (e in 0 until elements) {
+                        destinationData[i * elements + e] = sourceData[sourceIndex * elements + e]
+                    }
+                }
+            }
+        }
+    }
+}
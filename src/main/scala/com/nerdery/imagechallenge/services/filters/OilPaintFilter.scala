@@ -2,9 +2,13 @@ package com.nerdery.imagechallenge.services.filters
 
 import java.awt.image.BufferedImage
 import java.awt.{Color, Rectangle}
+import java.util
 
+import com.nerdery.imagechallenge.sanic.{BrushGeometry, IntensityLevels}
 import org.springframework.stereotype.Component
 
+import scala.collection.JavaConverters._
+
 /**
  * @author Justin Mullin
  *
@@ -22,11 +26,29 @@ class OilPaintFilter extends ImageFilter {
   val Radius = 6
   val Levels = 8
 
+  /**
+   * Requests can pick their own radius and levels within these bounds, with the values above as the defaults.
+   */
+  val RadiusParameter = FilterParameter.ofInt("radius", 1, 32, Radius)
+  val LevelsParameter = FilterParameter.ofInt("levels", 1, 255, Levels)
+
   override def getName: String = "OilPaint"
 
-  override def transform(source: BufferedImage): BufferedImage = {
+  override def getParameters: util.List[FilterParameter] = util.Arrays.asList(RadiusParameter, LevelsParameter)
+
+  override def getKernelRadius: Int = Radius
+
+  override def getKernelRadius(parameters: FilterParameters): Int = parameters.getInt(RadiusParameter)
+
+  override def transform(source: BufferedImage): BufferedImage = transform(source, FilterParameters.NONE)
+
+  override def transform(source: BufferedImage, parameters: FilterParameters): BufferedImage = {
     val (width, height) = (source.getWidth, source.getHeight)
 
+    // The brush offsets and the intensity table only depend on the parameters, so they are shared between requests
+    val brush = BrushGeometry.of(parameters.getInt(RadiusParameter)).getRadialOffsets.asScala.toIndexedSeq
+    val levels = IntensityLevels.of(parameters.getInt(LevelsParameter))
+
     // If there's an alpha channel in the source image, we'll need to adjust our read offset
     val hasAlphaChannel = source.getColorModel.hasAlpha
     val colorComponents = if(hasAlphaChannel) 4 else 3
@@ -43,16 +65,14 @@ class OilPaintFilter extends ImageFilter {
     for(x <- (0 until width).par; y <- (0 until height).par) {
       // Gather the pixel colors within one radius of here
       val colorNeighborhood =
-        for(dX <- -Radius to Radius;
-            dY <- -Radius to Radius
-            if length(dX, dY) <= Radius &&
-            bounds.contains(x+dX, y+dY)) yield {
+        for(offset <- brush
+            if bounds.contains(x+offset.x, y+offset.y)) yield {
 
-          getPixelColor(sourcePixels, width, colorComponents, x+dX, y+dY)
+          getPixelColor(sourcePixels, width, colorComponents, x+offset.x, y+offset.y)
         }
 
       // Separate nearby pixels into buckets by color intensity
-      val intensityBuckets = colorNeighborhood.groupBy(calculateIntensity)
+      val intensityBuckets = colorNeighborhood.groupBy(color => levels.level(color.getRed, color.getGreen, color.getBlue))
 
       // Grab the bucket with the most associated pixels
       val (_, pixels) = intensityBuckets.maxBy(_._2.size)
@@ -102,13 +122,4 @@ class OilPaintFilter extends ImageFilter {
     (y * width + x) * runSize
   }
 
-  /**
-   * Calculates the intensity level for a given color, in the range of from 0-[Levels]
-   */
-  def calculateIntensity(color: Color) = (((color.getRed + color.getGreen + color.getBlue) / 3) * Levels) / 255
-
-  /**
-   * Calculates the length of a vector given the x and y components
-   */
-  def length(x: Int, y: Int) = math.sqrt(math.pow(x, 2)+math.pow(y, 2))
 }
\ No newline at end of file
@@ -0,0 +1,148 @@
+package com.nerdery.imagechallenge.services;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Revalidates the source image against a local origin that serves it with an <code>ETag</code> and a
+ * <code>Last-Modified</code> date, and can be told to ignore conditional requests or to change the image.
+ */
+public class SourceImageServiceTest {
+    private static final long LAST_MODIFIED = 1_480_000_000_000L;
+
+    private HttpServer origin;
+    private SourceImageService service;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile byte[] image;
+    private volatile String entityTag;
+    private volatile boolean honorConditionalRequests = true;
+    private volatile String lastIfNoneMatch;
+
+    @Before
+    public void startOrigin() throws IOException {
+        image = encode(Color.RED);
+        entityTag = "\"v1\"";
+        origin = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        origin.createContext("/source.png", this::serve);
+        origin.start();
+
+        TiledFilterService tiledFilterService = new TiledFilterService();
+        tiledFilterService.setThresholdPixels(Long.MAX_VALUE);
+        service = new SourceImageService();
+        service.setTiledFilterService(tiledFilterService);
+        service.setSourceUrl("http://localhost:" + origin.getAddress().getPort() + "/source.png");
+    }
+
+    @After
+    public void stopOrigin() {
+        origin.stop(0);
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        lastIfNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        exchange.getResponseHeaders().set("ETag", entityTag);
+        exchange.getResponseHeaders().set("Last-Modified", "Thu, 24 Nov 2016 15:06:40 GMT");
+        if (honorConditionalRequests && entityTag.equals(lastIfNoneMatch)) {
+            exchange.sendResponseHeaders(304, -1);
+        } else {
+            byte[] body = image;
+            exchange.getResponseHeaders().set("Content-Type", "image/png");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+        exchange.close();
+    }
+
+    @Test
+    public void firstUseFetchesAndDecodesTheImage() throws IOException {
+        SourceImage sourceImage = service.getSourceImage();
+
+        assertEquals(1, requests.get());
+        assertEquals(1, service.getMisses());
+        assertEquals("\"v1\"", sourceImage.getEntityTag());
+        assertEquals(LAST_MODIFIED, sourceImage.getLastModified());
+        assertEquals(64, sourceImage.getImage().getWidth());
+        assertSame(sourceImage, service.getSourceImage());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void notModifiedKeepsTheSnapshot() throws IOException {
+        SourceImage first = service.getSourceImage();
+
+        service.revalidate();
+
+        assertEquals(2, requests.get());
+        assertEquals("\"v1\"", lastIfNoneMatch);
+        assertEquals(1, service.getNotModified());
+        assertEquals(0, service.getRefreshes());
+        assertSame(first, service.getSourceImage());
+    }
+
+    @Test
+    public void unchangedBytesKeepTheDecodedImageWithNewValidators() throws IOException {
+        SourceImage first = service.getSourceImage();
+        honorConditionalRequests = false;
+        entityTag = "\"v2\"";
+
+        service.revalidate();
+
+        SourceImage revalidated = service.getSourceImage();
+        assertEquals(1, service.getNotModified());
+        assertEquals(0, service.getRefreshes());
+        assertEquals("\"v2\"", revalidated.getEntityTag());
+        assertEquals(first.getContentHash(), revalidated.getContentHash());
+        assertSame(first.getImage(), revalidated.getImage());
+    }
+
+    @Test
+    public void changedImageIsSwappedIn() throws IOException {
+        SourceImage first = service.getSourceImage();
+        image = encode(Color.BLUE);
+        entityTag = "\"v3\"";
+
+        service.revalidate();
+
+        SourceImage refreshed = service.getSourceImage();
+        assertEquals(1, service.getRefreshes());
+        assertEquals(0, service.getNotModified());
+        assertEquals("\"v3\"", refreshed.getEntityTag());
+        assertNotEquals(first.getContentHash(), refreshed.getContentHash());
+        assertEquals(Color.BLUE.getRGB(), refreshed.getImage().getRGB(0, 0));
+    }
+
+    private static byte[] encode(Color color) throws IOException {
+        BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setColor(color);
+            graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+        } finally {
+            graphics.dispose();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}